@@ -0,0 +1,403 @@
+package org.openscience.cdk.ringsearch;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks the ring testers against a reference on random graphs. The
+ * benchmarks only time the testers, this should be run after changing one of
+ * them to confirm it still finds the same rings.
+ *
+ * <blockquote><pre>
+ * java -cp benchmarks/target/benchmarks.jar org.openscience.cdk.ringsearch.ConsistencyCheck
+ * </pre></blockquote>
+ *
+ * Each check prints the number of graphs compared, the first difference is
+ * reported and the exit status is 1.
+ *
+ * @author John May
+ */
+public final class ConsistencyCheck {
+
+    private enum Check {
+
+        /**
+         * Random sequences of edge additions and removals applied to a
+         * {@link DynamicRingTester}, compared after every edit to a complete
+         * search of the edited graph.
+         */
+        DYNAMIC {
+            @Override
+            int run(Random rnd, int rounds) {
+                for (int round = 0; round < rounds; round++) {
+
+                    // alternate between the one word and larger tiers
+                    int n = 2 + rnd.nextInt(round % 2 == 0 ? 62 : 300);
+                    GraphFamilies family = GraphFamilies.values()[rnd.nextInt(GraphFamilies.values().length)];
+                    GraphFamilies.Builder builder = family.build(n, rnd);
+                    n = builder.n;
+
+                    boolean[][] adjacent = new boolean[n][n];
+                    for (int k = 0; k < 2 * builder.m; k += 2)
+                        adjacent[builder.edges[k]][builder.edges[k + 1]] = adjacent[builder.edges[k + 1]][builder.edges[k]] = true;
+
+                    DynamicRingTester tester = new DynamicRingTester(builder.toCsr());
+                    compare(tester, adjacent, "initial " + family + " graph");
+
+                    for (int edit = 0; edit < 100; edit++) {
+                        int u = rnd.nextInt(n), v = rnd.nextInt(n);
+                        if (u == v)
+                            continue;
+                        if (adjacent[u][v]) {
+                            tester.removeEdge(u, v);
+                            adjacent[u][v] = adjacent[v][u] = false;
+                        } else {
+                            tester.addEdge(u, v);
+                            adjacent[u][v] = adjacent[v][u] = true;
+                        }
+                        compare(tester, adjacent, "edit " + edit + " {" + u + "," + v + "} of a " + family + " graph");
+                    }
+                }
+                return rounds;
+            }
+
+            private void compare(DynamicRingTester tester, boolean[][] adjacent, String context) {
+                int n = adjacent.length;
+                int[][] graph = new int[n][];
+                for (int u = 0; u < n; u++) {
+                    int d = 0;
+                    graph[u] = new int[n];
+                    for (int v = 0; v < n; v++) {
+                        if (adjacent[u][v])
+                            graph[u][d++] = v;
+                    }
+                    graph[u] = Arrays.copyOf(graph[u], d);
+                }
+                RingTester reference = BasicRingTester.ringTester(CsrGraph.fromAdjacency(graph));
+                for (int u = 0; u < n; u++) {
+                    if (tester.isInRing(u) != reference.isInRing(u))
+                        fail("atom " + u + " after " + context);
+                    for (int v : graph[u]) {
+                        if (tester.isInRing(u, v) != reference.isInRing(u, v))
+                            fail("bond {" + u + "," + v + "} after " + context);
+                    }
+                }
+                if (!samePartition(tester.ringSystems(), reference.ringSystems(), reference))
+                    fail("ring systems after " + context);
+            }
+        },
+
+        /**
+         * The recursive and non-recursive searches of the 64-bit and jumbo
+         * tiers, and the 2-4 word tier with its own and a reused stack, on
+         * the same graphs either side of the 64 and 256 vertex tier limits.
+         * All must agree with the linear tester and the search with a reused
+         * stack must not allocate more than the other.
+         */
+        TIERS {
+            @Override
+            int run(Random rnd, int rounds) {
+
+                List<CsrGraph> graphs = new ArrayList<CsrGraph>();
+                for (int round = 0; round < rounds; round++) {
+                    // sizes around the tier limits and then anywhere up to 300
+                    int n;
+                    switch (round % 3) {
+                        case 0:  n = 56 + rnd.nextInt(16);  break;
+                        case 1:  n = 248 + rnd.nextInt(16); break;
+                        default: n = 2 + rnd.nextInt(300);  break;
+                    }
+                    GraphFamilies family = GraphFamilies.values()[rnd.nextInt(GraphFamilies.values().length)];
+                    graphs.add(family.build(n, rnd).toCsr());
+                }
+
+                DfsStack stack = new DfsStack();
+                for (CsrGraph graph : graphs) {
+                    int n = graph.order();
+                    RingTester reference = new LinearBasicRingTester(graph);
+                    if (n <= 64) {
+                        compare(new RegularBasicRingTester(graph), reference, graph, "recursive 64-bit");
+                        compare(new RegularBasicRingTester(graph, stack), reference, graph, "non-recursive 64-bit");
+                    }
+                    if (n <= MultiWordBasicRingTester.MAX_VERTICES) {
+                        compare(new MultiWordBasicRingTester(graph), reference, graph, "2-4 word, own stack");
+                        compare(new MultiWordBasicRingTester(graph, stack), reference, graph, "2-4 word, reused stack");
+                    }
+                    compare(new JumboBasicRingTester(graph), reference, graph, "recursive jumbo");
+                    compare(new JumboBasicRingTester(graph, stack), reference, graph, "non-recursive jumbo");
+                }
+
+                for (Tier tier : Tier.values()) {
+                    // the first passes warm up and grow the stack
+                    long recursive = 0, iterative = 0;
+                    for (int pass = 0; pass < 3; pass++) {
+                        recursive = tier.allocated(graphs, null);
+                        iterative = tier.allocated(graphs, stack);
+                    }
+                    if (iterative > recursive)
+                        fail(String.format("non-recursive %s allocated %d bytes, recursive %d bytes",
+                                           tier, iterative, recursive));
+                }
+
+                return graphs.size();
+            }
+
+            private void compare(RingTester tester, RingTester reference, CsrGraph graph, String context) {
+                int[] offsets = graph.offsets(), neighbours = graph.neighbours();
+                for (int u = 0; u < graph.order(); u++) {
+                    if (tester.isInRing(u) != reference.isInRing(u))
+                        fail("atom " + u + " of " + graph.order() + ", " + context);
+                    for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                        int v = neighbours[k];
+                        if (tester.isInRing(u, v) != reference.isInRing(u, v))
+                            fail("bond {" + u + "," + v + "} of " + graph.order() + ", " + context);
+                    }
+                }
+                if (!samePartition(tester.ringSystems(), reference.ringSystems(), reference))
+                    fail("ring systems of " + graph.order() + ", " + context);
+            }
+        },
+
+        /**
+         * The smallest ring sizes of each atom and bond compared to a
+         * breadth-first search of every bond on its own. Graphs of at most 64
+         * vertices (the mask search) and larger (the queue search) are
+         * checked with and without a maximum size, extra random edges give
+         * atoms several rings of different sizes.
+         */
+        SMALLEST {
+            @Override
+            int run(Random rnd, int rounds) {
+
+                SmallestRings rings = new SmallestRings();
+                int[] sizes = new int[0];
+
+                for (int round = 0; round < rounds; round++) {
+
+                    int n = 3 + rnd.nextInt(round % 2 == 0 ? 60 : 300);
+                    GraphFamilies family = GraphFamilies.values()[rnd.nextInt(GraphFamilies.values().length)];
+                    GraphFamilies.Builder builder = family.build(n, rnd);
+                    n = builder.n;
+                    for (int e = 0, extra = rnd.nextInt(n / 4 + 1); e < extra; e++) {
+                        int u = rnd.nextInt(n), v = rnd.nextInt(n);
+                        if (u != v && builder.degree[u] < 4 && builder.degree[v] < 4 && !builder.adjacent(u, v))
+                            builder.edge(u, v);
+                    }
+                    CsrGraph graph = builder.toCsr();
+                    int[] offsets = graph.offsets(), neighbours = graph.neighbours();
+
+                    int[] expected = new int[offsets[n]];
+                    for (int u = 0; u < n; u++) {
+                        for (int k = offsets[u]; k < offsets[u + 1]; k++)
+                            expected[k] = shortestCycle(graph, u, neighbours[k]);
+                    }
+
+                    // the 64-bit tester gives the ring atoms as a mask, others are queried
+                    RingTester tester = n <= 64 && round % 4 == 0 ? new RegularBasicRingTester(graph)
+                                                                  : BasicRingTester.ringTester(graph);
+                    rings.prepare(n, offsets, neighbours, tester);
+                    if (sizes.length < n)
+                        sizes = new int[n];
+
+                    for (int max : new int[]{Integer.MAX_VALUE, n, 2 + rnd.nextInt(10)}) {
+                        String context = "max=" + max + " in a " + family + " graph of " + n;
+                        rings.atomSizes(sizes, max);
+                        for (int u = 0; u < n; u++) {
+                            int size = 0;
+                            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                                int expect = expected[k] <= max ? expected[k] : 0;
+                                if (rings.bondSize(u, neighbours[k], max) != expect)
+                                    fail("bond {" + u + "," + neighbours[k] + "} ring size "
+                                                 + rings.bondSize(u, neighbours[k], max) + " != " + expect
+                                                 + ", " + context);
+                                if (expect != 0 && (size == 0 || expect < size))
+                                    size = expect;
+                            }
+                            if (sizes[u] != size)
+                                fail("atom " + u + " ring size " + sizes[u] + " != " + size + ", " + context);
+                        }
+                    }
+                }
+                return rounds;
+            }
+
+            /**
+             * The length of the shortest cycle through the edge {u,v}, one more
+             * than the shortest path from u to v without the edge, 0 if there
+             * is no such path.
+             */
+            private int shortestCycle(CsrGraph graph, int u, int v) {
+                int[] offsets = graph.offsets(), neighbours = graph.neighbours();
+                int[] distance = new int[graph.order()];
+                Arrays.fill(distance, -1);
+                int[] queue = new int[graph.order()];
+                int head = 0, tail = 0;
+                distance[u] = 0;
+                queue[tail++] = u;
+                while (head < tail) {
+                    int w = queue[head++];
+                    for (int k = offsets[w]; k < offsets[w + 1]; k++) {
+                        int x = neighbours[k];
+                        if (w == u && x == v)
+                            continue;
+                        if (distance[x] < 0) {
+                            distance[x] = distance[w] + 1;
+                            if (x == v)
+                                return distance[x] + 1;
+                            queue[tail++] = x;
+                        }
+                    }
+                }
+                return 0;
+            }
+        };
+
+        /**
+         * Compare the testers on <i>rounds</i> random graphs.
+         *
+         * @return the number of graphs compared
+         */
+        abstract int run(Random rnd, int rounds);
+    }
+
+    /**
+     * The bounded tiers, a search with a null stack is recursive. The 2-4
+     * word tier is never recursive, without a stack it allocates its own.
+     */
+    private enum Tier {
+
+        REGULAR(64) {
+            @Override
+            RingTester search(CsrGraph graph, DfsStack stack) {
+                return new RegularBasicRingTester(graph, stack);
+            }
+        },
+        MULTI_WORD(MultiWordBasicRingTester.MAX_VERTICES) {
+            @Override
+            RingTester search(CsrGraph graph, DfsStack stack) {
+                return stack != null ? new MultiWordBasicRingTester(graph, stack)
+                                     : new MultiWordBasicRingTester(graph);
+            }
+        },
+        JUMBO(Integer.MAX_VALUE) {
+            @Override
+            RingTester search(CsrGraph graph, DfsStack stack) {
+                return new JumboBasicRingTester(graph, stack);
+            }
+        };
+
+        final int max;
+
+        Tier(int max) {
+            this.max = max;
+        }
+
+        abstract RingTester search(CsrGraph graph, DfsStack stack);
+
+        /**
+         * Bytes allocated searching each graph which fits the tier, 0 if the
+         * JVM does not provide the measure.
+         */
+        long allocated(List<CsrGraph> graphs, DfsStack stack) {
+            long start = allocatedBytes();
+            for (CsrGraph graph : graphs) {
+                // use the result so the tester is not optimised away
+                if (graph.order() <= max && search(graph, stack).isInRing(0))
+                    sink++;
+            }
+            long end = allocatedBytes();
+            return start < 0 ? 0 : end - start;
+        }
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    static volatile int sink;
+
+    /**
+     * Bytes allocated by this thread so far, -1 if the JVM does not provide
+     * the measure.
+     */
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    /**
+     * The labels of the ring atoms define the same partition (the label
+     * values may differ).
+     */
+    static boolean samePartition(int[] a, int[] b, RingTester tester) {
+        int n = a.length;
+        int[] ab = new int[n + 1], ba = new int[n + 1];
+        Arrays.fill(ab, -1);
+        Arrays.fill(ba, -1);
+        for (int i = 0; i < n; i++) {
+            if (!tester.isInRing(i))
+                continue;
+            if (a[i] < 0 || b[i] < 0)
+                return false;
+            if (ab[a[i]] < 0 && ba[b[i]] < 0) {
+                ab[a[i]] = b[i];
+                ba[b[i]] = a[i];
+            } else if (ab[a[i]] != b[i] || ba[b[i]] != a[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void fail(String message) {
+        throw new IllegalStateException(message);
+    }
+
+    public static void main(String[] args) {
+
+        long seed = 42;
+        int rounds = 200;
+        Set<Check> checks = EnumSet.allOf(Check.class);
+
+        for (int i = 0; i < args.length; i++) {
+            if ("-s".equals(args[i]) && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if ("-r".equals(args[i]) && i + 1 < args.length) {
+                rounds = Integer.parseInt(args[++i]);
+            } else if ("-c".equals(args[i]) && i + 1 < args.length) {
+                checks = EnumSet.noneOf(Check.class);
+                for (String name : args[++i].split(","))
+                    checks.add(Check.valueOf(name.trim().toUpperCase()));
+            } else {
+                System.err.println("usage: ConsistencyCheck [-s seed] [-r rounds] [-c " + checkNames() + "]");
+                System.exit(1);
+            }
+        }
+
+        for (Check check : checks) {
+            try {
+                int count = check.run(new Random(seed), rounds);
+                System.out.printf("[CHECK] %s: %d graphs ok\n", check, count);
+            } catch (IllegalStateException e) {
+                System.out.printf("[CHECK] %s: FAILED %s (seed=%d)\n", check, e.getMessage(), seed);
+                System.exit(1);
+            }
+        }
+    }
+
+    private static String checkNames() {
+        StringBuilder sb = new StringBuilder();
+        for (Check check : Check.values()) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(check.name().toLowerCase());
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.MDLV3000Reader;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.silent.AtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A set of molecules for benchmarking, loaded both as containers and as CSR
+ * graphs. The name <i>synthetic</i> generates graphs of every
+ * {@link GraphFamilies family} from 8 to 1024 vertices, so each tier of the
+ * ring testers has graphs to search. The name <i>extreme</i> loads the
+ * bundled stress test molecule, any other name is the path to an SDF.
+ *
+ * @author John May
+ */
+final class Dataset {
+
+    final List<IAtomContainer> containers;
+    final List<CsrGraph>       graphs;
+    final int                  maxAtoms;
+
+    private Dataset(List<IAtomContainer> containers) {
+        this.containers = containers;
+        this.graphs = new ArrayList<CsrGraph>(containers.size());
+        int maxAtoms = 0;
+        for (IAtomContainer container : containers) {
+            graphs.add(BasicRingTester.createCsr(container));
+            maxAtoms = Math.max(maxAtoms, container.getAtomCount());
+        }
+        this.maxAtoms = maxAtoms;
+    }
+
+    /** sizes of the synthetic graphs, either side of the tier thresholds */
+    private static final int[] SYNTHETIC_SIZES = {8, 12, 16, 24, 32, 48, 60, 96, 128, 192, 250, 512, 1024};
+
+    static Dataset load(String name) throws IOException, CDKException {
+        if ("synthetic".equals(name))
+            return new Dataset(synthetic());
+        if ("extreme".equals(name))
+            return new Dataset(loadExtremeMol());
+        return new Dataset(loadSdf(new File(name)));
+    }
+
+    /**
+     * The graphs with at most <i>maxOrder</i> vertices.
+     *
+     * @param maxOrder the largest number of vertices
+     * @return the graphs
+     * @throws IllegalStateException no graph is small enough, a benchmark of
+     *                               the graphs would time an empty loop
+     */
+    List<CsrGraph> graphs(int maxOrder) {
+        List<CsrGraph> selected = new ArrayList<CsrGraph>();
+        for (CsrGraph graph : graphs) {
+            if (graph.order() <= maxOrder)
+                selected.add(graph);
+        }
+        if (selected.isEmpty())
+            throw new IllegalStateException("no graph of the dataset has at most " + maxOrder + " vertices");
+        return selected;
+    }
+
+    private static List<IAtomContainer> synthetic() {
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        Random rnd = new Random(42);
+        for (GraphFamilies family : GraphFamilies.values()) {
+            for (int size : SYNTHETIC_SIZES)
+                containers.add(family.build(size, rnd).toContainer());
+        }
+        return containers;
+    }
+
+    private static List<IAtomContainer> loadExtremeMol() throws CDKException, IOException {
+        InputStream in = Dataset.class.getResourceAsStream("/extreme.mol");
+        if (in == null)
+            throw new IOException("extreme.mol was not on the classpath");
+        MDLV3000Reader reader = new MDLV3000Reader(in);
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        containers.add(reader.read(new AtomContainer()));
+        reader.close();
+        return containers;
+    }
+
+    private static List<IAtomContainer> loadSdf(File file) throws IOException {
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        IteratingSDFReader reader = new IteratingSDFReader(new FileInputStream(file),
+                                                           SilentChemObjectBuilder.getInstance(),
+                                                           true);
+        try {
+            while (reader.hasNext()) {
+                IAtomContainer container = reader.next();
+                if (!(container instanceof IQueryAtomContainer))
+                    containers.add(container);
+            }
+        } finally {
+            reader.close();
+        }
+        return containers;
+    }
+
+}
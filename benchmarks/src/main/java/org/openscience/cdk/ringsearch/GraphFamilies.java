@@ -0,0 +1,188 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.Atom;
+import org.openscience.cdk.silent.AtomContainer;
+import org.openscience.cdk.silent.Bond;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Parameterised families of synthetic graphs for measuring how the ring
+ * testers scale with size and topology. Each family generates a graph of
+ * (about) <i>n</i> vertices, the exact order depends on the repeating unit
+ * of the family.
+ *
+ * @author John May
+ */
+enum GraphFamilies {
+
+    /** a path, no rings. */
+    CHAIN {
+        @Override
+        Builder build(int n, Random rnd) {
+            Builder g = new Builder(n);
+            for (int i = 1; i < n; i++)
+                g.edge(i - 1, i);
+            return g;
+        }
+    },
+
+    /** linearly fused hexagons (a ladder with a rung every other step). */
+    POLYACENE {
+        @Override
+        Builder build(int n, Random rnd) {
+            // two rails of odd length, 4 atoms per additional ring
+            int length = Math.max(3, n / 2) | 1;
+            Builder g = new Builder(2 * length);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    g.edge(i - 1, i);
+                    g.edge(length + i - 1, length + i);
+                }
+                if (i % 2 == 0)
+                    g.edge(i, length + i);
+            }
+            return g;
+        }
+    },
+
+    /** six membered rings joined by single shared (spiro) atoms. */
+    SPIRO {
+        @Override
+        Builder build(int n, Random rnd) {
+            int rings = Math.max(1, (n - 1) / 5);
+            Builder g = new Builder(1 + 5 * rings);
+            int spiro = 0;
+            for (int r = 0; r < rings; r++) {
+                int first = 1 + 5 * r;
+                g.edge(spiro, first);
+                for (int i = 1; i < 5; i++)
+                    g.edge(first + i - 1, first + i);
+                // the next spiro atom is opposite on the ring
+                g.edge(first + 4, spiro);
+                spiro = first + 2;
+            }
+            return g;
+        }
+    },
+
+    /** a single ring of n atoms. */
+    MACROCYCLE {
+        @Override
+        Builder build(int n, Random rnd) {
+            n = Math.max(3, n);
+            Builder g = new Builder(n);
+            for (int i = 0; i < n; i++)
+                g.edge(i, (i + 1) % n);
+            return g;
+        }
+    },
+
+    /**
+     * a cubic cage, the generalised Petersen graph GP(n/2, 2): an outer ring,
+     * an inner star polygon and spokes - every atom is in many rings.
+     */
+    CAGE {
+        @Override
+        Builder build(int n, Random rnd) {
+            int k = Math.max(5, n / 2);
+            Builder g = new Builder(2 * k);
+            for (int i = 0; i < k; i++) {
+                g.edge(i, (i + 1) % k);
+                g.edge(k + i, k + (i + 2) % k);
+                g.edge(i, k + i);
+            }
+            return g;
+        }
+    },
+
+    /** a random tree of degree at most 4 plus n / 10 random extra edges. */
+    RANDOM {
+        @Override
+        Builder build(int n, Random rnd) {
+            Builder g = new Builder(n);
+            for (int i = 1; i < n; i++) {
+                int j;
+                do {
+                    j = rnd.nextInt(i);
+                } while (g.degree[j] == 4);
+                g.edge(j, i);
+            }
+            for (int e = 0, attempts = 0; e < n / 10 && attempts < n; attempts++) {
+                int u = rnd.nextInt(n), v = rnd.nextInt(n);
+                if (u != v && g.degree[u] < 4 && g.degree[v] < 4 && !g.adjacent(u, v)) {
+                    g.edge(u, v);
+                    e++;
+                }
+            }
+            return g;
+        }
+    };
+
+    /**
+     * Generate a graph of the family.
+     *
+     * @param n   approximate number of vertices
+     * @param rnd random source (used by the random family only)
+     * @return the graph
+     */
+    abstract Builder build(int n, Random rnd);
+
+    /**
+     * Accumulates the edges of a graph and converts them to CSR or a
+     * container. No family has a vertex of degree more than 4.
+     */
+    static final class Builder {
+
+        final int   n;
+        final int[] degree;
+        final int[] adj;
+        int[] edges = new int[16];
+        int   m;
+
+        Builder(int n) {
+            this.n = n;
+            this.degree = new int[n];
+            this.adj = new int[4 * n];
+        }
+
+        void edge(int u, int v) {
+            if (2 * m + 2 > edges.length)
+                edges = Arrays.copyOf(edges, 2 * edges.length);
+            edges[2 * m] = u;
+            edges[2 * m + 1] = v;
+            adj[4 * u + degree[u]++] = v;
+            adj[4 * v + degree[v]++] = u;
+            m++;
+        }
+
+        boolean adjacent(int u, int v) {
+            for (int k = 4 * u, end = k + degree[u]; k < end; k++) {
+                if (adj[k] == v)
+                    return true;
+            }
+            return false;
+        }
+
+        CsrGraph toCsr() {
+            int[] offsets = new int[n + 1];
+            int[] neighbours = new int[2 * m];
+            CsrGraph.fill(n, edges, 2 * m, offsets, neighbours);
+            return new CsrGraph(n, offsets, neighbours);
+        }
+
+        IAtomContainer toContainer() {
+            IAtomContainer container = new AtomContainer();
+            IAtom[] atoms = new IAtom[n];
+            for (int i = 0; i < n; i++)
+                container.addAtom(atoms[i] = new Atom("C"));
+            for (int k = 0; k < 2 * m; k += 2)
+                container.addBond(new Bond(atoms[edges[k]], atoms[edges[k + 1]]));
+            return container;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openscience.cdk.graph.SpanningTree;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the ring testers, the adjacency builders and CDK's
+ * SpanningTree. Each operation perceives the rings of every molecule in the
+ * dataset, select a dataset with <code>-p dataset=/path/to/file.sdf</code>,
+ * <code>-p dataset=extreme</code> for the bundled stress test (default:
+ * synthetic graphs of every size tier). The tier benchmarks only search the
+ * graphs which fit the tier and fail if the dataset has none. The {@link #main} method adds the GC
+ * profiler so allocation rates are reported with the timings, e.g.
+ *
+ * <blockquote><pre>
+ * java -jar benchmarks/target/benchmarks.jar -p dataset=chembl.sdf Jumbo
+ * </pre></blockquote>
+ *
+ * @author John May
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RingSearchBenchmarks {
+
+    @Param({"synthetic"})
+    public String dataset;
+
+    private Dataset        data;
+    private RingCache      cache;
+    private List<CsrGraph> regularGraphs, multiWordGraphs;
+
+    @Setup(Level.Trial)
+    public void load(BenchmarkParams params) throws Exception {
+        data = Dataset.load(dataset);
+        // only the graphs that fit the 64-bit and 2-4 word tiers, selecting
+        // fails if there are none rather than timing an empty loop
+        String benchmark = params.getBenchmark();
+        benchmark = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+        if (benchmark.startsWith("regular"))
+            regularGraphs = data.graphs(64);
+        if (benchmark.startsWith("multiWord"))
+            multiWordGraphs = data.graphs(MultiWordBasicRingTester.MAX_VERTICES);
+        // every graph is cached so the benchmark measures hits
+        cache = RingCache.withMaxEntries(data.graphs.size());
+        for (CsrGraph graph : data.graphs)
+            cache.perceive(graph);
+    }
+
+    /** per-thread reusable state */
+    @State(Scope.Thread)
+    public static class Reuse {
+        final DfsStack            stack     = new DfsStack();
+        final RingSearchWorkspace workspace = new RingSearchWorkspace();
+        int[]                     sizes     = new int[0];
+    }
+
+    @Benchmark
+    public void regular(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : regularGraphs)
+            consume(new RegularBasicRingTester(graph, reuse.stack), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void regularRecursive(Blackhole bh) {
+        for (CsrGraph graph : regularGraphs)
+            consume(new RegularBasicRingTester(graph), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void multiWord(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : multiWordGraphs)
+            consume(new MultiWordBasicRingTester(graph, reuse.stack), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void jumbo(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(new JumboBasicRingTester(graph, reuse.stack), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void jumboRecursive(Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(new JumboBasicRingTester(graph), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void linear(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(new LinearBasicRingTester(graph, reuse.stack), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void basic(Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(BasicRingTester.ringTester(graph), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void basicPruned(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(BasicRingTester.ringTester(graph, BasicRingTester.DEFAULT_LINEAR_THRESHOLD, reuse.stack, true),
+                    graph.order(), bh);
+    }
+
+    @Benchmark
+    public void workspace(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(reuse.workspace.perceive(graph), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void summary(Reuse reuse, Blackhole bh) {
+        for (CsrGraph graph : data.graphs) {
+            reuse.workspace.perceive(graph);
+            bh.consume(reuse.workspace.summary());
+        }
+    }
+
+    @Benchmark
+    public void smallestRingSizes(Reuse reuse, Blackhole bh) {
+        if (reuse.sizes.length < data.maxAtoms)
+            reuse.sizes = new int[data.maxAtoms];
+        for (CsrGraph graph : data.graphs) {
+            reuse.workspace.perceive(graph);
+            // rings of up to 8 atoms, as for aromaticity
+            bh.consume(reuse.workspace.smallestRingSizes(reuse.sizes, 8));
+        }
+    }
+
+    @Benchmark
+    public void cacheHit(Blackhole bh) {
+        for (CsrGraph graph : data.graphs)
+            consume(cache.perceive(graph), graph.order(), bh);
+    }
+
+    @Benchmark
+    public void basicFromContainer(Blackhole bh) {
+        for (IAtomContainer container : data.containers)
+            consume(new BasicRingTester(container), container.getAtomCount(), bh);
+    }
+
+    @Benchmark
+    public void createCsr(Blackhole bh) {
+        for (IAtomContainer container : data.containers)
+            bh.consume(BasicRingTester.createCsr(container));
+    }
+
+    @Benchmark
+    public void create(Blackhole bh) {
+        for (IAtomContainer container : data.containers)
+            bh.consume(BasicRingTester.create(container));
+    }
+
+    @Benchmark
+    public void createList(Blackhole bh) {
+        for (IAtomContainer container : data.containers)
+            bh.consume(BasicRingTester.createList(container));
+    }
+
+    @Benchmark
+    public void spanningTree(Blackhole bh) {
+        for (IAtomContainer container : data.containers) {
+            IAtomContainer cyclic = new SpanningTree(container).getCyclicFragmentsContainer();
+            for (IAtom atom : container.atoms())
+                bh.consume(cyclic.contains(atom));
+        }
+    }
+
+    @Benchmark
+    public void cyclicFragments(Blackhole bh) {
+        for (IAtomContainer container : data.containers) {
+            CyclicFragments fragments = CyclicFragments.of(container);
+            for (int i = 0, n = container.getAtomCount(); i < n; i++)
+                bh.consume(fragments.containsAtom(i));
+        }
+    }
+
+    /**
+     * Query every atom so the result of the search is used.
+     */
+    private static void consume(RingTester tester, int n, Blackhole bh) {
+        for (int i = 0; i < n; i++)
+            bh.consume(tester.isInRing(i));
+    }
+
+    /**
+     * Run the benchmarks (command line options as for JMH) with the GC
+     * profiler.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        if (cli.getIncludes().isEmpty())
+            options.include(RingSearchBenchmarks.class.getSimpleName());
+        options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+
+}
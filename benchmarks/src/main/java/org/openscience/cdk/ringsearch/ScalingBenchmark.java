@@ -0,0 +1,241 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.graph.SpanningTree;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Times each ring tester on synthetic graphs ({@link GraphFamilies}) of
+ * increasing size, from 10 to 10<sup>6</sup> vertices in 1-2-5 steps. The
+ * results are written as CSV (one row per family, size and tester) with the
+ * mean and minimum time and the bytes allocated per search, from which the
+ * tier thresholds of {@link BasicRingTester} can be chosen.
+ *
+ * <blockquote><pre>
+ * java -cp benchmarks/target/benchmarks.jar org.openscience.cdk.ringsearch.ScalingBenchmark -o scaling.csv
+ * </pre></blockquote>
+ *
+ * A tester is not run on graphs larger than its tier supports, or once a
+ * search takes longer than the time budget (1 s). This is a simple harness
+ * rather than JMH so the whole sweep completes in minutes, the JMH
+ * benchmarks ({@link RingSearchBenchmarks}) should be used to confirm a
+ * particular comparison.
+ *
+ * @author John May
+ */
+public final class ScalingBenchmark {
+
+    /** searches taking longer (ns) are not repeated on larger graphs */
+    private static final long BUDGET = 1000000000L;
+
+    private enum Tester {
+
+        REGULAR(64) {
+            @Override
+            int run(CsrGraph graph, IAtomContainer container, DfsStack stack) {
+                return count(new RegularBasicRingTester(graph, stack), graph.order());
+            }
+        },
+        MULTI_WORD(MultiWordBasicRingTester.MAX_VERTICES) {
+            @Override
+            int run(CsrGraph graph, IAtomContainer container, DfsStack stack) {
+                return count(new MultiWordBasicRingTester(graph, stack), graph.order());
+            }
+        },
+        // the path state is quadratic in the number of vertices
+        JUMBO(20000) {
+            @Override
+            int run(CsrGraph graph, IAtomContainer container, DfsStack stack) {
+                return count(new JumboBasicRingTester(graph, stack), graph.order());
+            }
+        },
+        LINEAR(Integer.MAX_VALUE) {
+            @Override
+            int run(CsrGraph graph, IAtomContainer container, DfsStack stack) {
+                return count(new LinearBasicRingTester(graph, stack), graph.order());
+            }
+        },
+        BASIC(Integer.MAX_VALUE) {
+            @Override
+            int run(CsrGraph graph, IAtomContainer container, DfsStack stack) {
+                return count(BasicRingTester.ringTester(graph, BasicRingTester.DEFAULT_LINEAR_THRESHOLD, stack),
+                             graph.order());
+            }
+        },
+        SPANNING_TREE(100000) {
+            @Override
+            boolean container() {
+                return true;
+            }
+
+            @Override
+            int run(CsrGraph graph, IAtomContainer container, DfsStack stack) {
+                IAtomContainer cyclic = new SpanningTree(container).getCyclicFragmentsContainer();
+                return cyclic != null ? cyclic.getAtomCount() : -1;
+            }
+        };
+
+        final int max;
+
+        Tester(int max) {
+            this.max = max;
+        }
+
+        /** whether the tester needs the graph as a container */
+        boolean container() {
+            return false;
+        }
+
+        /** perceive the rings and return the number of ring atoms */
+        abstract int run(CsrGraph graph, IAtomContainer container, DfsStack stack);
+
+        private static int count(RingTester tester, int n) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (tester.isInRing(i))
+                    count++;
+            }
+            return count;
+        }
+    }
+
+    private final PrintWriter        out;
+    private final int                maxSize;
+    private final int                repetitions;
+    private final Set<GraphFamilies> families;
+    private final ThreadMXBean       threads = ManagementFactory.getThreadMXBean();
+    private final DfsStack           stack   = new DfsStack();
+
+    private ScalingBenchmark(PrintWriter out, int maxSize, int repetitions, Set<GraphFamilies> families) {
+        this.out = out;
+        this.maxSize = maxSize;
+        this.repetitions = repetitions;
+        this.families = families;
+    }
+
+    /**
+     * Sizes from 10 to the <i>max</i> in 1-2-5 steps.
+     */
+    static List<Integer> sizes(int max) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (long decade = 10; decade <= max; decade *= 10) {
+            for (int step : new int[]{1, 2, 5}) {
+                if (step * decade <= max)
+                    sizes.add((int) (step * decade));
+            }
+        }
+        return sizes;
+    }
+
+    private void run() {
+
+        out.println("family,n,m,tester,reps,mean_us,min_us,bytes_per_op,ring_atoms");
+
+        for (GraphFamilies family : families) {
+
+            Set<Tester> active = EnumSet.allOf(Tester.class);
+            Random rnd = new Random(42);
+
+            for (int size : sizes(maxSize)) {
+
+                GraphFamilies.Builder builder = family.build(size, rnd);
+                CsrGraph graph = builder.toCsr();
+                IAtomContainer container = null;
+
+                // fewer repetitions for large graphs
+                int reps = (int) Math.max(1, Math.min(repetitions, 10000000L / graph.order()));
+
+                for (Tester tester : Tester.values()) {
+
+                    if (!active.contains(tester))
+                        continue;
+                    if (graph.order() > tester.max) {
+                        active.remove(tester);
+                        continue;
+                    }
+                    if (tester.container() && container == null)
+                        container = builder.toContainer();
+
+                    for (int i = 0; i < reps; i++)
+                        tester.run(graph, container, stack);
+
+                    long min = Long.MAX_VALUE, total = 0;
+                    long allocated = allocatedBytes();
+                    int ringAtoms = 0;
+                    for (int i = 0; i < reps; i++) {
+                        long t0 = System.nanoTime();
+                        ringAtoms = tester.run(graph, container, stack);
+                        long elapsed = System.nanoTime() - t0;
+                        total += elapsed;
+                        min = Math.min(min, elapsed);
+                    }
+                    if (allocated >= 0)
+                        allocated = (allocatedBytes() - allocated) / reps;
+
+                    out.printf("%s,%d,%d,%s,%d,%.3f,%.3f,%d,%d%n",
+                               family, graph.order(), builder.m, tester, reps,
+                               total / (reps * 1e3), min / 1e3, allocated, ringAtoms);
+                    out.flush();
+
+                    if (total / reps > BUDGET)
+                        active.remove(tester);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bytes allocated by this thread so far, -1 if the JVM does not provide
+     * the measure.
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        String output = null;
+        int maxSize = 1000000;
+        int repetitions = 20;
+        Set<GraphFamilies> families = EnumSet.allOf(GraphFamilies.class);
+
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = args[++i];
+            } else if ("-n".equals(args[i]) && i + 1 < args.length) {
+                maxSize = Integer.parseInt(args[++i]);
+            } else if ("-r".equals(args[i]) && i + 1 < args.length) {
+                repetitions = Integer.parseInt(args[++i]);
+            } else if ("-f".equals(args[i]) && i + 1 < args.length) {
+                families = EnumSet.noneOf(GraphFamilies.class);
+                for (String name : args[++i].split(","))
+                    families.add(GraphFamilies.valueOf(name.trim().toUpperCase()));
+            } else {
+                System.err.println("usage: ScalingBenchmark [-o out.csv] [-n max size] [-r repetitions]"
+                                           + " [-f chain,polyacene,spiro,macrocycle,cage,random]");
+                System.exit(1);
+            }
+        }
+
+        PrintWriter out = output != null ? new PrintWriter(new FileWriter(output))
+                                         : new PrintWriter(System.out);
+        try {
+            new ScalingBenchmark(out, maxSize, repetitions, families).run();
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -15,18 +15,37 @@ import org.openscience.cdk.io.MDLV3000Reader;
 import org.openscience.cdk.io.iterator.IteratingSDFReader;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.ringsearch.BasicRingTester;
+import org.openscience.cdk.ringsearch.CsrGraph;
+import org.openscience.cdk.ringsearch.FastSpanningTree;
+import org.openscience.cdk.ringsearch.GraphLibrary;
+import org.openscience.cdk.ringsearch.GraphLibraryWriter;
+import org.openscience.cdk.ringsearch.MolfileGraphReader;
+import org.openscience.cdk.ringsearch.RingMaskStore;
+import org.openscience.cdk.ringsearch.RingMaskWriter;
+import org.openscience.cdk.ringsearch.RingSearchMetrics;
+import org.openscience.cdk.ringsearch.RingSearchWorkspace;
 import org.openscience.cdk.ringsearch.RingTester;
 import org.openscience.cdk.ringsearch.SimulatedBooleanRingTester;
 import org.openscience.cdk.silent.AtomContainer;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author John May
@@ -37,11 +56,19 @@ public class BenchmarkSDF {
     private static final Options options = new Options();
 
     static {
-        options.addOption(new Option("i", "sdf", true, "SDF file"));
+        options.addOption(new Option("i", "sdf", true, "SDF file (or a packed graph library, see -k)"));
         options.addOption(new Option("r", "reps", true, "number of repetitions to test (default = 50)"));
         options.addOption(new Option("f", "filter", true, "filter - only test molecules below this size"));
         options.addOption(new Option("x", "stress-test", false, "perform a stress test with a very large molecule"));
         options.addOption(new Option("s", "simulate", false, "simulates the BasicRingTester - i.e. calculate the overhead of just converting to an adjacency list"));
+        options.addOption(new Option("l", "legacy", false, "benchmark the SpanningTree compatible facade (ISINRING flags and cyclic fragments) in place of the BasicRingTester"));
+        options.addOption(new Option("m", "stream", false, "stream the SDF (may be gzipped) through ring perception workers in constant memory"));
+        options.addOption(new Option("t", "threads", true, "number of workers when streaming (default = number of processors)"));
+        options.addOption(new Option("c", "ctab", false, "perceive rings straight from the connection tables, without building containers"));
+        options.addOption(new Option("a", "adjacency", false, "benchmark building the adjacency with atom number scans against the constant time atom index"));
+        options.addOption(new Option("w", "write-masks", true, "write the ring masks of the SDF to this file, then benchmark lookup against recomputation"));
+        options.addOption(new Option("k", "pack", true, "convert the SDF to a packed graph library in this file, the library may then be used as the input"));
+        options.addOption(new Option("p", "percentiles", false, "enable the ring search metrics and print latency percentiles"));
         options.addOption(new Option("h", "help", false, "print help"));
     }
 
@@ -49,11 +76,17 @@ public class BenchmarkSDF {
     private static int filter = Integer.MAX_VALUE;
     private static boolean stressTest = false;
     private static boolean simulate = false;
+    private static boolean legacy = false;
+    private static boolean adjacency = false;
 
     public static void main(String[] args) throws ParseException {
 
         CommandLine cli = parser.parse(options, args);
 
+        // must be set before the ring search classes are loaded
+        if (cli.hasOption("p"))
+            System.setProperty("cdk.ringsearch.metrics", "true");
+
         if (cli.hasOption("h"))
             help();
 
@@ -70,12 +103,53 @@ public class BenchmarkSDF {
         if (cli.hasOption("s"))
             simulate = true;
 
+        if (cli.hasOption("l"))
+            legacy = true;
+
+        if (cli.hasOption("a"))
+            adjacency = true;
+
         if (cli.hasOption("f"))
             filter = Integer.parseInt(cli.getOptionValue("f"));
 
         if (cli.hasOption("r"))
             reps = Integer.parseInt(cli.getOptionValue("r"));
 
+        if (cli.hasOption("k")) {
+            pack(sdf, new File(cli.getOptionValue("k")));
+            return;
+        }
+
+        if (GraphLibrary.isLibrary(new File(sdf))) {
+            library(sdf);
+            return;
+        }
+
+        if (cli.hasOption("w")) {
+            masks(sdf, new File(cli.getOptionValue("w")));
+            return;
+        }
+
+        if (cli.hasOption("c")) {
+            ctab(sdf);
+            return;
+        }
+
+        if (cli.hasOption("m")) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (cli.hasOption("t"))
+                threads = Integer.parseInt(cli.getOptionValue("t"));
+            try {
+                stream(sdf, threads);
+            } catch (IllegalStateException e) {
+                System.err.println("[BENCHMARK] " + e.getMessage());
+                if (e.getCause() != null)
+                    e.getCause().printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+
         List<IAtomContainer> molecules;
         if (stressTest) {
             System.out.println("[BENCHMARK] loading stress test");
@@ -92,18 +166,30 @@ public class BenchmarkSDF {
 
         System.out.printf("[BENCHMARK] loaded %d molecules\n", molecules.size());
 
+        if (adjacency) {
+            adjacency(molecules);
+            return;
+        }
+
         System.out.printf("[BENCHMARK] checking counts and warming up\n");
 
-        RingTestBenchmark bitwiseBM = simulate ? new SimulatedBooleanRingTesterBenchmark() : new BooleanRingTesterBenchmark();
+        RingTestBenchmark bitwiseBM = simulate ? new SimulatedBooleanRingTesterBenchmark()
+                                               : legacy ? new FastSpanningTreeBenchmark()
+                                                        : new BooleanRingTesterBenchmark();
         RingTestBenchmark treeBM = new SpanningTreeBenchMark();
 
+        // the names padded to the same width
+        int width = Math.max(bitwiseBM.name.length(), treeBM.name.length());
+        String bitwiseName = String.format("%" + width + "s", bitwiseBM.name);
+        String treeName = String.format("%" + width + "s", treeBM.name);
+
         DescriptiveStatistics dummy = new DescriptiveStatistics(); // don't measure correctness
 
         int bitwiseCount = bitwiseBM.benchmark(molecules, dummy);
         int treeCount = treeBM.benchmark(molecules, dummy);
 
-        System.out.printf("[BENCHMARK] BasicRingTester indicated there were %d atoms in rings\n", bitwiseCount);
-        System.out.printf("[BENCHMARK] SpanningTree    indicated there were %d atoms in rings\n", treeCount);
+        System.out.printf("[BENCHMARK] %s indicated there were %d atoms in rings\n", bitwiseName, bitwiseCount);
+        System.out.printf("[BENCHMARK] %s indicated there were %d atoms in rings\n", treeName, treeCount);
 
         if (!stressTest) {
             System.out.print("[BENCHMARK] warming up");
@@ -117,6 +203,9 @@ public class BenchmarkSDF {
             System.out.println("[BENCHMARK] skipping warp up on stress test");
         }
 
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.get().reset();
+
         DescriptiveStatistics bitwiseStats = new DescriptiveStatistics();
         DescriptiveStatistics treeStats = new DescriptiveStatistics();
 
@@ -124,38 +213,71 @@ public class BenchmarkSDF {
             reps = 5;  // 50 is way to many for the stress test
 
         System.out.printf("[BENCHMARK] Starting benchmark, %d repetitions\n", reps);
-        System.out.print("[BENCHMARK] Testing BasicRingTester");
+        System.out.print("[BENCHMARK] Testing " + bitwiseName);
         for (int r = 0; r < reps; r++) {
             System.out.print(".");
             bitwiseBM.benchmark(molecules, bitwiseStats);
         }
         System.out.println("done");
 
-        System.out.print("[BENCHMARK] Testing   SpanningTree");
+        System.out.print("[BENCHMARK] Testing " + treeName);
         for (int r = 0; r < reps; r++) {
             System.out.print(".");
             treeBM.benchmark(molecules, treeStats);
         }
         System.out.println("done");
 
-        System.out.printf("[BENCHMARK] BasicRingTester took on average %.2f ms +/- %.2f\n", bitwiseStats.getMean(), bitwiseStats.getStandardDeviation());
-        System.out.printf("[BENCHMARK]    SpanningTree took on average %.2f ms +/- %.2f\n", treeStats.getMean(), treeStats.getStandardDeviation());
+        System.out.printf("[BENCHMARK] %s took on average %.2f ms +/- %.2f\n", bitwiseName, bitwiseStats.getMean(), bitwiseStats.getStandardDeviation());
+        System.out.printf("[BENCHMARK] %s took on average %.2f ms +/- %.2f\n", treeName, treeStats.getMean(), treeStats.getStandardDeviation());
         System.out.println("[BENCHMARK]");
-        System.out.printf("[BENCHMARK] BasicRingTester took a minimum of %.0f ms and a maximum of %.0f ms\n", bitwiseStats.getMin(), bitwiseStats.getMax());
-        System.out.printf("[BENCHMARK]    SpanningTree took a minimum of %.0f ms and a maximum of %.0f ms\n", treeStats.getMin(), treeStats.getMax());
+        System.out.printf("[BENCHMARK] %s took a minimum of %.0f ms and a maximum of %.0f ms\n", bitwiseName, bitwiseStats.getMin(), bitwiseStats.getMax());
+        System.out.printf("[BENCHMARK] %s took a minimum of %.0f ms and a maximum of %.0f ms\n", treeName, treeStats.getMin(), treeStats.getMax());
+        System.out.println("[BENCHMARK]");
+        System.out.printf("[BENCHMARK] %s took p50 %.0f ms, p90 %.0f ms and p99 %.0f ms\n", bitwiseName, bitwiseStats.getPercentile(50), bitwiseStats.getPercentile(90), bitwiseStats.getPercentile(99));
+        System.out.printf("[BENCHMARK] %s took p50 %.0f ms, p90 %.0f ms and p99 %.0f ms\n", treeName, treeStats.getPercentile(50), treeStats.getPercentile(90), treeStats.getPercentile(99));
         System.out.println("[BENCHMARK]");
 
         if (bitwiseStats.getMean() < treeStats.getMean()) {
             double perc = treeStats.getMean() / bitwiseStats.getMean();
-            System.out.printf("[BENCHMARK] BasicRingTester was %.2f%% faster\n", perc * 100);
+            System.out.printf("[BENCHMARK] %s was %.2f%% faster\n", bitwiseBM.name, perc * 100);
         } else if (bitwiseStats.getMean() > treeStats.getMean()) {
             double perc = bitwiseStats.getMean() / treeStats.getMean();
-            System.out.printf("[BENCHMARK] SpanningTree was %.2f%% faster\n", perc * 100);
+            System.out.printf("[BENCHMARK] %s was %.2f%% faster\n", treeBM.name, perc * 100);
         } else {
             System.out.println("[BENCHMARK] Methods were equivalent");
         }
 
+        metrics();
+
+
+    }
+
+    /**
+     * Compare building the adjacency with a linear scan for each atom number
+     * against the indexed builder.
+     */
+    private static void adjacency(List<IAtomContainer> molecules) {
 
+        RingTestBenchmark scanBM = new ScanAdjacencyBenchmark();
+        RingTestBenchmark indexBM = new IndexedAdjacencyBenchmark();
+
+        DescriptiveStatistics dummy = new DescriptiveStatistics();
+        System.out.printf("[BENCHMARK] %s found %d neighbours\n", scanBM.name, scanBM.benchmark(molecules, dummy));
+        System.out.printf("[BENCHMARK] %s found %d neighbours\n", indexBM.name, indexBM.benchmark(molecules, dummy));
+
+        if (stressTest)
+            reps = 5;
+
+        DescriptiveStatistics scanStats = new DescriptiveStatistics();
+        DescriptiveStatistics indexStats = new DescriptiveStatistics();
+        for (int r = 0; r < reps; r++) {
+            scanBM.benchmark(molecules, scanStats);
+            indexBM.benchmark(molecules, indexStats);
+        }
+
+        System.out.printf("[BENCHMARK] %s took on average %.2f ms +/- %.2f\n", scanBM.name, scanStats.getMean(), scanStats.getStandardDeviation());
+        System.out.printf("[BENCHMARK] %s took on average %.2f ms +/- %.2f\n", indexBM.name, indexStats.getMean(), indexStats.getStandardDeviation());
+        metrics();
     }
 
     private static void help() {
@@ -218,6 +340,388 @@ public class BenchmarkSDF {
         return molecules;
     }
 
+    /**
+     * Stream the SDF through a bounded queue to <i>threads</i> ring perception
+     * workers, only the molecules in the queue are held in memory. If a worker
+     * (or the input) fails the input is abandoned, the other workers are
+     * interrupted and the failure rethrown, no results are reported for the
+     * partial run.
+     */
+    private static void stream(String sdf, int threads) {
+
+        File file = new File(sdf);
+
+        if (file.isDirectory() || !file.exists())
+            throw new IllegalArgumentException("file was a directory or did not exist");
+
+        System.out.printf("[BENCHMARK] streaming %s with %d workers\n", sdf, threads);
+
+        final BlockingQueue<IAtomContainer> queue = new ArrayBlockingQueue<IAtomContainer>(256 * threads);
+        final IAtomContainer end = new AtomContainer(); // marks the end of the input
+        final AtomicLong moleculeCount = new AtomicLong();
+        final AtomicLong atomCount = new AtomicLong();
+        final AtomicLong ringAtomCount = new AtomicLong();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        final Thread producer = Thread.currentThread();
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    RingSearchWorkspace workspace = RingSearchWorkspace.forCurrentThread();
+                    long molecules = 0, atoms = 0, ringAtoms = 0;
+                    try {
+                        IAtomContainer molecule;
+                        while ((molecule = queue.take()) != end) {
+                            RingTester tester = workspace.perceive(molecule);
+                            int n = molecule.getAtomCount();
+                            for (int i = 0; i < n; i++) {
+                                if (tester.isInRing(i))
+                                    ringAtoms++;
+                            }
+                            atoms += n;
+                            molecules++;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        // record the first failure and wake the producer, it may be
+                        // blocked on a full queue now that this worker has stopped
+                        if (failure.compareAndSet(null, e))
+                            producer.interrupt();
+                        return;
+                    }
+                    moleculeCount.addAndGet(molecules);
+                    atomCount.addAndGet(atoms);
+                    ringAtomCount.addAndGet(ringAtoms);
+                }
+            }, "ring-perception-" + i);
+            // a worker left waiting after a failure must not keep the JVM alive
+            workers[i].setDaemon(true);
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+            worker.start();
+
+        IteratingSDFReader reader = null;
+        boolean complete = false;
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+            if (sdf.endsWith(".gz"))
+                in = new GZIPInputStream(in, 1 << 16);
+            reader = new IteratingSDFReader(in, SilentChemObjectBuilder.getInstance(), true);
+            while (reader.hasNext() && failure.get() == null) {
+                IAtomContainer molecule = reader.next();
+                if (molecule.getAtomCount() < filter
+                        && !(molecule instanceof IQueryAtomContainer))
+                    queue.put(molecule);
+            }
+            if (failure.get() == null) {
+                for (int i = 0; i < threads; i++)
+                    queue.put(end);
+                for (Thread worker : workers)
+                    worker.join();
+                complete = failure.get() == null;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to read SDF: " + e.getMessage());
+        } catch (InterruptedException e) {
+            if (failure.get() == null)
+                throw new IllegalStateException("interrupted whilst streaming: " + e.getMessage());
+        } finally {
+            // the other workers may be blocked on the queue, stop them
+            if (!complete)
+                stop(workers);
+            if (reader != null)
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // can't do anything
+                }
+        }
+
+        // the counts are incomplete if a worker failed, don't report them
+        if (failure.get() != null)
+            throw new IllegalStateException("ring perception failed whilst streaming", failure.get());
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("[BENCHMARK] perceived %d molecules (%d atoms, %d in rings) in %.2f s\n",
+                          moleculeCount.get(), atomCount.get(), ringAtomCount.get(), seconds);
+        System.out.printf("[BENCHMARK] %.0f molecules/sec\n", moleculeCount.get() / seconds);
+        System.out.printf("[BENCHMARK] %.0f atoms/sec\n", atomCount.get() / seconds);
+        metrics();
+    }
+
+    /**
+     * Interrupt the workers and wait for them to finish, the producer's own
+     * interrupt (from a failed worker) is cleared first.
+     */
+    private static void stop(Thread[] workers) {
+        Thread.interrupted();
+        for (Thread worker : workers)
+            worker.interrupt();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read the SDF with the lightweight connection table reader and perceive
+     * the rings on the primitive adjacency, no containers are built.
+     */
+    private static void ctab(String sdf) {
+
+        File file = new File(sdf);
+
+        if (file.isDirectory() || !file.exists())
+            throw new IllegalArgumentException("file was a directory or did not exist");
+
+        System.out.printf("[BENCHMARK] reading connection tables from %s, %d repetitions\n", sdf, reps);
+
+        RingSearchWorkspace workspace = new RingSearchWorkspace();
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        long molecules = 0, atoms = 0, ringAtoms = 0;
+
+        for (int r = 0; r < reps; r++) {
+            molecules = atoms = ringAtoms = 0;
+            long start = System.nanoTime();
+            MolfileGraphReader reader = null;
+            try {
+                reader = sdf.endsWith(".gz")
+                         ? new MolfileGraphReader(Channels.newChannel(new GZIPInputStream(new FileInputStream(file), 1 << 16)))
+                         : new MolfileGraphReader(file);
+                while (reader.next()) {
+                    if (skip(reader))
+                        continue;
+                    int n = reader.atomCount();
+                    RingTester tester = workspace.perceive(n, reader.offsets(), reader.neighbours());
+                    for (int i = 0; i < n; i++) {
+                        if (tester.isInRing(i))
+                            ringAtoms++;
+                    }
+                    atoms += n;
+                    molecules++;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("unable to read SDF: " + e.getMessage());
+            } finally {
+                if (reader != null)
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        // can't do anything
+                    }
+            }
+            stats.addValue((System.nanoTime() - start) / 1e9);
+        }
+
+        double seconds = stats.getMean();
+        System.out.printf("[BENCHMARK] read %d molecules (%d atoms, %d in rings) in %.2f s +/- %.2f\n",
+                          molecules, atoms, ringAtoms, seconds, stats.getStandardDeviation());
+        System.out.printf("[BENCHMARK] %.0f molecules/sec\n", molecules / seconds);
+        System.out.printf("[BENCHMARK] %.0f atoms/sec\n", atoms / seconds);
+        metrics();
+    }
+
+    /**
+     * Whether to skip the current connection table, the same molecules are
+     * skipped as when loading containers: those over the size filter and
+     * queries.
+     */
+    private static boolean skip(MolfileGraphReader reader) {
+        return reader.atomCount() >= filter || reader.isQuery();
+    }
+
+    /**
+     * Convert the SDF (read as connection tables) to a packed graph library.
+     */
+    private static void pack(String sdf, File out) {
+
+        System.out.printf("[BENCHMARK] packing the connection tables of %s into %s", sdf, out);
+        if (filter != Integer.MAX_VALUE)
+            System.out.printf(" [filter=%d]", filter);
+        System.out.println();
+
+        long start = System.nanoTime();
+        int count;
+        try {
+            MolfileGraphReader reader = sdf.endsWith(".gz")
+                                        ? new MolfileGraphReader(Channels.newChannel(new GZIPInputStream(new FileInputStream(sdf), 1 << 16)))
+                                        : new MolfileGraphReader(new File(sdf));
+            try {
+                count = GraphLibraryWriter.convert(reader, out, filter);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to write graph library: " + e.getMessage());
+        }
+        System.out.printf("[BENCHMARK] wrote %d records (%d bytes) in %.2f s\n",
+                          count, out.length(), (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Perceive the rings of every graph in a packed library, the adjacency
+     * is read from the memory-mapped file into reused arrays - there is no
+     * parsing.
+     */
+    private static void library(String file) {
+
+        GraphLibrary library;
+        try {
+            library = GraphLibrary.open(new File(file));
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to open graph library: " + e.getMessage());
+        }
+
+        System.out.printf("[BENCHMARK] reading %d graphs from %s, %d repetitions\n", library.size(), file, reps);
+
+        RingSearchWorkspace workspace = new RingSearchWorkspace();
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        int[] offsets = null, neighbours = null;
+        long molecules = 0, atoms = 0, ringAtoms = 0;
+
+        for (int r = 0; r < reps; r++) {
+            molecules = atoms = ringAtoms = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < library.size(); i++) {
+                int n = library.atomCount(i);
+                if (n >= filter)
+                    continue;
+                offsets = library.offsets(i, offsets);
+                neighbours = library.neighbours(i, neighbours);
+                workspace.perceive(n, offsets, neighbours);
+                ringAtoms += workspace.summary().ringAtomCount();
+                atoms += n;
+                molecules++;
+            }
+            stats.addValue((System.nanoTime() - start) / 1e9);
+        }
+
+        try {
+            library.close();
+        } catch (IOException e) {
+            // can't do anything
+        }
+
+        double seconds = stats.getMean();
+        System.out.printf("[BENCHMARK] read %d molecules (%d atoms, %d in rings) in %.2f s +/- %.2f\n",
+                          molecules, atoms, ringAtoms, seconds, stats.getStandardDeviation());
+        System.out.printf("[BENCHMARK] %.0f molecules/sec\n", molecules / seconds);
+        System.out.printf("[BENCHMARK] %.0f atoms/sec\n", atoms / seconds);
+        metrics();
+    }
+
+    /**
+     * Perceive the rings of the SDF (read as connection tables) and write
+     * the masks to a store. The lookup of every atom in the memory-mapped
+     * store is then compared with perceiving the rings again from the
+     * adjacency (kept in memory).
+     */
+    private static void masks(String sdf, File out) {
+
+        System.out.printf("[BENCHMARK] writing ring masks of %s to %s", sdf, out);
+        if (filter != Integer.MAX_VALUE)
+            System.out.printf(" [filter=%d]", filter);
+        System.out.println();
+
+        RingSearchWorkspace workspace = new RingSearchWorkspace();
+        List<CsrGraph> graphs = new ArrayList<CsrGraph>();
+
+        long start = System.nanoTime();
+        try {
+            MolfileGraphReader reader = sdf.endsWith(".gz")
+                                        ? new MolfileGraphReader(Channels.newChannel(new GZIPInputStream(new FileInputStream(sdf), 1 << 16)))
+                                        : new MolfileGraphReader(new File(sdf));
+            RingMaskWriter writer = new RingMaskWriter(out);
+            try {
+                while (reader.next()) {
+                    if (skip(reader))
+                        continue;
+                    int n = reader.atomCount();
+                    RingTester tester = workspace.perceive(n, reader.offsets(), reader.neighbours());
+                    writer.write(tester, n, reader.edges(), reader.bondCount());
+                    int[] offsets = Arrays.copyOf(reader.offsets(), n + 1);
+                    graphs.add(new CsrGraph(n, offsets, Arrays.copyOf(reader.neighbours(), offsets[n])));
+                }
+            } finally {
+                writer.close();
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to write ring masks: " + e.getMessage());
+        }
+        System.out.printf("[BENCHMARK] wrote %d records (%d bytes) in %.2f s\n",
+                          graphs.size(), out.length(), (System.nanoTime() - start) / 1e9);
+
+        RingMaskStore store;
+        try {
+            store = RingMaskStore.open(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to open ring masks: " + e.getMessage());
+        }
+
+        DescriptiveStatistics lookupStats = new DescriptiveStatistics();
+        DescriptiveStatistics recomputeStats = new DescriptiveStatistics();
+        long lookupCount = 0, recomputeCount = 0;
+
+        for (int r = 0; r < reps; r++) {
+
+            lookupCount = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < store.size(); i++) {
+                int n = store.atomCount(i);
+                for (int j = 0; j < n; j++) {
+                    if (store.isInRing(i, j))
+                        lookupCount++;
+                }
+            }
+            lookupStats.addValue((System.nanoTime() - start) / 1e6);
+
+            recomputeCount = 0;
+            start = System.nanoTime();
+            for (CsrGraph graph : graphs) {
+                RingTester tester = workspace.perceive(graph);
+                for (int j = 0; j < graph.order(); j++) {
+                    if (tester.isInRing(j))
+                        recomputeCount++;
+                }
+            }
+            recomputeStats.addValue((System.nanoTime() - start) / 1e6);
+        }
+
+        try {
+            store.close();
+        } catch (IOException e) {
+            // can't do anything
+        }
+
+        System.out.printf("[BENCHMARK] lookup found %d ring atoms in %.2f ms +/- %.2f\n",
+                          lookupCount, lookupStats.getMean(), lookupStats.getStandardDeviation());
+        System.out.printf("[BENCHMARK] recompute found %d ring atoms in %.2f ms +/- %.2f\n",
+                          recomputeCount, recomputeStats.getMean(), recomputeStats.getStandardDeviation());
+        metrics();
+    }
+
+    /**
+     * Print the ring search metrics (if enabled with -p).
+     */
+    private static void metrics() {
+        if (!RingSearchMetrics.ENABLED)
+            return;
+        System.out.println("[BENCHMARK]");
+        for (String line : RingSearchMetrics.get().summary().split("\n"))
+            System.out.println("[BENCHMARK] " + line.trim());
+    }
+
     static class BooleanRingTesterBenchmark extends RingTestBenchmark {
         BooleanRingTesterBenchmark() {
             super("BasicRingTester");
@@ -268,6 +772,52 @@ public class BenchmarkSDF {
         }
     }
 
+    static class ScanAdjacencyBenchmark extends RingTestBenchmark {
+        ScanAdjacencyBenchmark() {
+            super("adjacency (getAtomNumber)");
+        }
+
+        @Override
+        public int benchmark(List<IAtomContainer> molecules, DescriptiveStatistics statistics) {
+            int count = 0;
+
+            long start = System.currentTimeMillis();
+            for (IAtomContainer molecule : molecules) {
+                int[] degree = new int[molecule.getAtomCount()];
+                for (IBond bond : molecule.bonds()) {
+                    degree[molecule.getAtomNumber(bond.getAtom(0))]++;
+                    degree[molecule.getAtomNumber(bond.getAtom(1))]++;
+                }
+                for (int d : degree)
+                    count += d;
+            }
+            long end = System.currentTimeMillis();
+            statistics.addValue(end - start);
+
+            return count;
+        }
+    }
+
+    static class IndexedAdjacencyBenchmark extends RingTestBenchmark {
+        IndexedAdjacencyBenchmark() {
+            super("adjacency (atom index)  ");
+        }
+
+        @Override
+        public int benchmark(List<IAtomContainer> molecules, DescriptiveStatistics statistics) {
+            int count = 0;
+
+            long start = System.currentTimeMillis();
+            for (IAtomContainer molecule : molecules) {
+                count += BasicRingTester.createCsr(molecule).neighbours().length;
+            }
+            long end = System.currentTimeMillis();
+            statistics.addValue(end - start);
+
+            return count;
+        }
+    }
+
     static class SpanningTreeBenchMark extends RingTestBenchmark {
 
         SpanningTreeBenchMark() {
@@ -304,6 +854,29 @@ public class BenchmarkSDF {
         }
     }
 
+    static class FastSpanningTreeBenchmark extends RingTestBenchmark {
+
+        FastSpanningTreeBenchmark() {
+            super("FastSpanningTree");
+        }
+
+        @Override
+        public int benchmark(List<IAtomContainer> molecules, DescriptiveStatistics statistics) {
+            int count = 0;
+
+            long start = System.currentTimeMillis();
+            for (IAtomContainer molecule : molecules) {
+                // the flags are also set, the fragments hold the ring atoms
+                FastSpanningTree tree = new FastSpanningTree(molecule);
+                count += tree.getCyclicFragmentsContainer().getAtomCount();
+            }
+            long end = System.currentTimeMillis();
+            statistics.addValue(end - start);
+
+            return count;
+        }
+    }
+
     abstract static class RingTestBenchmark {
 
         private String name;
@@ -0,0 +1,101 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Constant time lookup of an atom's index in a container. The atoms are
+ * placed in an open addressing table keyed on their identity, building the
+ * table is O(n) where as {@link IAtomContainer#getAtomNumber(IAtom)} is a
+ * linear scan. The table may be reused for another container, the arrays
+ * only grow.
+ *
+ * @author John May
+ */
+final class AtomIndex {
+
+    private IAtom[] keys   = new IAtom[128];
+    private int[]   values = new int[128];
+    private int     mask   = 127;
+
+    // the occupied slots, so the table can be cleared without a full pass
+    private int[] used = new int[64];
+    private int   size = 0;
+
+    /**
+     * Index the atoms of a container, replacing any previous container.
+     *
+     * @param container structure
+     * @return this index
+     */
+    AtomIndex index(IAtomContainer container) {
+
+        int n = container.getAtomCount();
+
+        clear();
+
+        // keep the load factor at or below 1/2
+        int capacity = Integer.highestOneBit(Math.max(2 * n - 1, 1)) << 1;
+        if (keys.length < capacity) {
+            keys = new IAtom[capacity];
+            values = new int[capacity];
+        }
+        if (used.length < n)
+            used = new int[n];
+        mask = capacity - 1;
+
+        for (int i = 0; i < n; i++) {
+            IAtom atom = container.getAtom(i);
+            int k = slot(atom);
+            while (keys[k] != null && keys[k] != atom)
+                k = (k + 1) & mask;
+            if (keys[k] == null) {
+                keys[k] = atom;
+                values[k] = i;
+                used[size++] = k;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * The index of the atom in the container, -1 if it is not present.
+     *
+     * @param atom an atom
+     * @return the index
+     */
+    int get(IAtom atom) {
+        int k = slot(atom);
+        IAtom key;
+        while ((key = keys[k]) != null) {
+            if (key == atom)
+                return values[k];
+            k = (k + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return approximate size in bytes
+     */
+    long bytes() {
+        // 16 bytes per array header
+        return 16 * 3 + 8L * keys.length + 4L * (values.length + used.length);
+    }
+
+    /**
+     * Release the atoms so they are not kept reachable by a reused index.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++)
+            keys[used[i]] = null;
+        size = 0;
+    }
+
+    private int slot(IAtom atom) {
+        int h = System.identityHashCode(atom) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+}
@@ -14,16 +14,244 @@ import java.util.List;
  */
 public class BasicRingTester implements RingTester {
 
+    /**
+     * Graphs with more vertices than this use the linear (bridge based) tester,
+     * may be set with the system property
+     * <code>cdk.ringsearch.linearThreshold</code>.
+     */
+    public static final int DEFAULT_LINEAR_THRESHOLD = Integer.getInteger("cdk.ringsearch.linearThreshold", 512);
+
+    /**
+     * Remove the terminal atoms and acyclic chains (i.e. compute the 2-core)
+     * before searching, may be enabled with the system property
+     * <code>cdk.ringsearch.prune</code>. Pruning lets more structures with
+     * explicit hydrogens use the faster testers and acyclic structures are
+     * not searched at all.
+     */
+    public static final boolean DEFAULT_PRUNE = Boolean.getBoolean("cdk.ringsearch.prune");
+
     private final RingTester tester;
     private final IAtomContainer container;
 
-    public BasicRingTester(List<List<Integer>> graph, IAtomContainer container) {
-        this.tester    = graph.size() <= 64 ? new RegularBasicRingTester(graph) : new JumboBasicRingTester(graph);
+    // the index of each atom, for the atom and bond queries
+    private final AtomIndex index;
+
+    public BasicRingTester(CsrGraph graph, IAtomContainer container, int linearThreshold) {
+        this.tester    = ringTester(graph, linearThreshold);
         this.container = container;
+        this.index     = index(container);
+    }
+
+    public BasicRingTester(CsrGraph graph, IAtomContainer container) {
+        this(graph, container, DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    public BasicRingTester(int[][] graph, IAtomContainer container) {
+        this(CsrGraph.fromAdjacency(graph), container);
+    }
+
+    public BasicRingTester(List<List<Integer>> graph, IAtomContainer container) {
+        this(CsrGraph.fromAdjacency(graph), container);
     }
 
     public BasicRingTester(IAtomContainer container) {
-        this(createList(container), container);
+        this(container, DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    public BasicRingTester(IAtomContainer container, int linearThreshold) {
+        this(new AtomIndex().index(container), container, linearThreshold);
+    }
+
+    /**
+     * The index is used to build the adjacency and then kept for the atom and
+     * bond queries.
+     */
+    private BasicRingTester(AtomIndex index, IAtomContainer container, int linearThreshold) {
+        this.tester    = ringTester(createCsr(container, index), linearThreshold);
+        this.container = container;
+        this.index     = index;
+    }
+
+    BasicRingTester(RingTester tester, IAtomContainer container) {
+        this(tester, container, index(container));
+    }
+
+    /**
+     * Wrap a tester with an index already built for the container.
+     */
+    BasicRingTester(RingTester tester, IAtomContainer container, AtomIndex index) {
+        this.tester = tester;
+        this.container = container;
+        this.index = index;
+    }
+
+    /**
+     * Index the atoms of the container, the container may be null if only
+     * the vertex queries are used.
+     */
+    private static AtomIndex index(IAtomContainer container) {
+        return container != null ? new AtomIndex().index(container) : null;
+    }
+
+    /**
+     * Create a ring tester for the container which searches lazily, see
+     * {@link #lazyRingTester(CsrGraph, int)}.
+     *
+     * @param container structure
+     * @return lazy ring tester for the structure
+     */
+    public static BasicRingTester lazy(IAtomContainer container) {
+        return new BasicRingTester(lazyRingTester(createCsr(container), DEFAULT_LINEAR_THRESHOLD), container);
+    }
+
+    /**
+     * Create a ring tester which searches lazily, see
+     * {@link #lazyRingTester(CsrGraph, int)}.
+     *
+     * @param graph the graph
+     * @return lazy ring tester for the graph
+     */
+    public static RingTester lazyRingTester(CsrGraph graph) {
+        return lazyRingTester(graph, DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    /**
+     * Create a ring tester which searches lazily. Nothing is searched until
+     * the first query, then only the connected component of the queried atom
+     * (or bond) is searched. When only a few atoms are queried (e.g. the
+     * atoms matched by a SMARTS pattern) the other components are never
+     * searched. Querying the ring systems searches every component.
+     *
+     * Queries are synchronized until every component has been searched,
+     * as for an eager tester the lazy tester is safe to query from multiple
+     * threads.
+     *
+     * @param graph           the graph
+     * @param linearThreshold size above which the linear tester is used
+     * @return lazy ring tester for the graph
+     */
+    public static RingTester lazyRingTester(CsrGraph graph, int linearThreshold) {
+        int n = graph.order();
+        if (n <= 64) {
+            RegularBasicRingTester tester = new RegularBasicRingTester();
+            tester.searchLazily(n, graph.offsets(), graph.neighbours());
+            return tester;
+        } else if (n <= MultiWordBasicRingTester.MAX_VERTICES && n <= linearThreshold) {
+            MultiWordBasicRingTester tester = new MultiWordBasicRingTester();
+            tester.searchLazily(n, graph.offsets(), graph.neighbours());
+            return tester;
+        } else if (n <= linearThreshold) {
+            JumboBasicRingTester tester = new JumboBasicRingTester();
+            tester.searchLazily(n, graph.offsets(), graph.neighbours());
+            return tester;
+        } else {
+            LinearBasicRingTester tester = new LinearBasicRingTester();
+            tester.searchLazily(n, graph.offsets(), graph.neighbours());
+            return tester;
+        }
+    }
+
+    /**
+     * Create a ring tester for the provided primitive adjacency list. The
+     * tester does not store the atoms and so can only be queried by index.
+     *
+     * @param graph adjacency list
+     * @return ring tester for the graph
+     */
+    public static RingTester ringTester(int[][] graph) {
+        return ringTester(CsrGraph.fromAdjacency(graph));
+    }
+
+    /**
+     * Create a ring tester for a graph in CSR form, the neighbours of vertex
+     * <i>v</i> are <code>neighbours[offsets[v]]</code> up to
+     * <code>neighbours[offsets[v + 1]]</code>.
+     *
+     * @param offsets    start of each vertex's neighbours (length n + 1)
+     * @param neighbours the neighbours of each vertex
+     * @return ring tester for the graph
+     */
+    public static RingTester ringTester(int[] offsets, int[] neighbours) {
+        return ringTester(new CsrGraph(offsets, neighbours));
+    }
+
+    /**
+     * Create a ring tester for a graph in CSR form.
+     *
+     * @param graph the graph
+     * @return ring tester for the graph
+     */
+    public static RingTester ringTester(CsrGraph graph) {
+        return ringTester(graph, DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    /**
+     * Create a ring tester for a graph in CSR form, graphs with more than
+     * <i>linearThreshold</i> vertices use the linear time and memory tester.
+     *
+     * @param graph           the graph
+     * @param linearThreshold size above which the linear tester is used
+     * @return ring tester for the graph
+     */
+    public static RingTester ringTester(CsrGraph graph, int linearThreshold) {
+        return ringTester(graph, linearThreshold, null);
+    }
+
+    /**
+     * Create a ring tester for a graph in CSR form. The provided <i>stack</i>
+     * is used for a non-recursive search and can be reused between calls on
+     * the same thread. Without a stack, a recursive search is used on graphs
+     * of up to 64 vertices (where the depth is bounded) and larger graphs are
+     * searched with a new stack. Graphs of more than 64 vertices are split into
+     * their connected components and the narrowest tier that fits each
+     * component is selected: one 64-bit word per vertex up to 64 vertices,
+     * 2-4 words up to 256 vertices, BitSets up to the <i>linearThreshold</i>
+     * and the linear tester beyond.
+     *
+     * @param graph           the graph
+     * @param linearThreshold size above which the linear tester is used
+     * @param stack           stack for a non-recursive search (may be null)
+     * @return ring tester for the graph
+     */
+    public static RingTester ringTester(CsrGraph graph, int linearThreshold, DfsStack stack) {
+        return ringTester(graph, linearThreshold, stack, DEFAULT_PRUNE);
+    }
+
+    /**
+     * Create a ring tester for a graph in CSR form, optionally searching only
+     * the 2-core of the graph. The tier is selected from the size of the core.
+     *
+     * @param graph           the graph
+     * @param linearThreshold size above which the linear tester is used
+     * @param stack           stack for a non-recursive search (may be null)
+     * @param prune           remove vertices of degree 0 or 1 before searching
+     * @return ring tester for the graph
+     */
+    public static RingTester ringTester(CsrGraph graph, int linearThreshold, DfsStack stack, boolean prune) {
+        if (!RingSearchMetrics.ENABLED)
+            return search(graph, linearThreshold, stack, prune);
+        long start = System.nanoTime();
+        RingTester tester = search(graph, linearThreshold, stack, prune);
+        RingSearchMetrics.search(System.nanoTime() - start);
+        return tester;
+    }
+
+    private static RingTester search(CsrGraph graph, int linearThreshold, DfsStack stack, boolean prune) {
+        if (prune) {
+            TwoCore core = new TwoCore().prune(graph.order(), graph.offsets(), graph.neighbours());
+            if (!core.isWholeGraph()) {
+                if (core.order() == 0)
+                    return new PrunedRingTester(core, null);
+                CsrGraph coreGraph = new CsrGraph(core.order(), core.offsets(), core.neighbours());
+                return new PrunedRingTester(core, search(coreGraph, linearThreshold, stack, false));
+            }
+        }
+        int n = graph.order();
+        if (n <= 64)
+            return new RegularBasicRingTester(graph, stack);
+        // each connected component is searched with the tier that fits it
+        return new ComponentRingTester(linearThreshold).search(n, graph.offsets(), graph.neighbours(),
+                                                               stack != null ? stack : new DfsStack(n));
     }
 
     @Override
@@ -33,36 +261,197 @@ public class BasicRingTester implements RingTester {
 
     @Override
     public boolean isInRing(IAtom atom) {
-        return tester.isInRing(container.getAtomNumber(atom));
+        return tester.isInRing(index.get(atom));
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        return tester.isInRing(u, v);
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        return tester.isInRing(index.get(bond.getAtom(0)),
+                               index.get(bond.getAtom(1)));
+    }
+
+    @Override
+    public int[] ringSystems() {
+        return tester.ringSystems();
+    }
+
+    /**
+     * The ring systems as one mask per system, only available for structures
+     * of at most 64 atoms.
+     *
+     * @return the ring system masks
+     * @throws IllegalStateException the structure has more than 64 atoms
+     */
+    public long[] ringSystemMasks() {
+        if (tester instanceof RegularBasicRingTester)
+            return ((RegularBasicRingTester) tester).ringSystemMasks();
+        int[] labels = tester.ringSystems();
+        if (labels.length > 64)
+            throw new IllegalStateException("ring system masks are only available for 64 atoms or less");
+        // other testers (pruned, split into components or cached) only have
+        // the labels, build the masks from them
+        long[] masks = new long[0];
+        for (int v = 0; v < labels.length; v++) {
+            if (labels[v] < 0)
+                continue;
+            if (labels[v] >= masks.length)
+                masks = Arrays.copyOf(masks, labels[v] + 1);
+            masks[labels[v]] |= 1L << v;
+        }
+        return masks;
+    }
+
+    /**
+     * Counts of the rings (circuit rank, ring systems and ring atoms), kept
+     * during the search so no atoms are queried.
+     *
+     * @return the ring summary
+     */
+    public RingSummary summary() {
+        return RingSummary.of((RingCounts) tester);
+    }
+
+    /**
+     * The ring atoms as a single mask, bit <i>i</i> is set if atom <i>i</i>
+     * is in a ring. Only available for structures of at most 64 atoms.
+     *
+     * @return the ring atom mask
+     * @throws IllegalStateException the structure has more than 64 atoms
+     */
+    public long ringAtomMask() {
+        RingCounts counts = (RingCounts) tester;
+        if (counts.order() > 64)
+            throw new IllegalStateException("a single ring atom mask is only available for 64 atoms or less");
+        long[] words = new long[1];
+        counts.ringAtomMask(words);
+        return words[0];
+    }
+
+    /**
+     * The ring atoms as the words of a mask, bit <i>i</i> % 64 of word
+     * <i>i</i> / 64 is set if atom <i>i</i> is in a ring. The provided array
+     * is used if it is large enough.
+     *
+     * @param words array for the mask (may be null)
+     * @return the ring atom mask
+     */
+    public long[] ringAtomMask(long[] words) {
+        RingCounts counts = (RingCounts) tester;
+        int size = (counts.order() + 63) >> 6;
+        if (words == null || words.length < size)
+            words = new long[size];
+        else
+            Arrays.fill(words, 0);
+        counts.ringAtomMask(words);
+        return words;
     }
 
     public static int[][] create(IAtomContainer container) {
 
+        long start = RingSearchMetrics.ENABLED ? System.nanoTime() : 0;
+
         int n = container.getAtomCount();
-        int[][] graph = new int[n][16];
-        int[] connected = new int[n];
+        int[] edges = edges(container);
+        int[] degree = new int[n];
+
+        for (int v : edges)
+            degree[v]++;
+
+        // size each row to the degree of the atom
+        int[][] graph = new int[n][];
+        for (int i = 0; i < n; i++)
+            graph[i] = new int[degree[i]];
+
+        Arrays.fill(degree, 0);
 
         // ct table only (i.e. multi-bonds will break this)
-        for (IBond bond : container.bonds()) {
-            int a1 = container.getAtomNumber(bond.getAtom(0));
-            int a2 = container.getAtomNumber(bond.getAtom(1));
-            graph[a1][connected[a1]++] = a2;
-            graph[a2][connected[a2]++] = a1;
+        for (int k = 0; k < edges.length; k += 2) {
+            int a1 = edges[k], a2 = edges[k + 1];
+            graph[a1][degree[a1]++] = a2;
+            graph[a2][degree[a2]++] = a1;
         }
 
-        // trim the neighbours
-        for (int i = 0; i < n; i++) {
-            graph[i] = Arrays.copyOf(graph[i], connected[i]);
-        }
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.adjacency(System.nanoTime() - start);
 
         return graph;
     }
 
+    /**
+     * Create a CSR adjacency list for the container, the degree of each atom
+     * is counted before the neighbours are placed.
+     *
+     * @param container structure
+     * @return the graph in CSR form
+     */
+    public static CsrGraph createCsr(IAtomContainer container) {
+        return createCsr(container, new AtomIndex().index(container));
+    }
+
+    /**
+     * Create a CSR adjacency list for the container with the atom indices
+     * from <i>index</i>.
+     */
+    static CsrGraph createCsr(IAtomContainer container, AtomIndex index) {
+
+        long start = RingSearchMetrics.ENABLED ? System.nanoTime() : 0;
+
+        int n = container.getAtomCount();
+        int[] edges = edges(container, index);
+        int[] offsets = new int[n + 1];
+
+        for (int v : edges)
+            offsets[v + 1]++;
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+
+        // 'fill' is where the next neighbour of each atom goes
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] neighbours = new int[edges.length];
+
+        // ct table only (i.e. multi-bonds will break this)
+        for (int k = 0; k < edges.length; k += 2) {
+            int a1 = edges[k], a2 = edges[k + 1];
+            neighbours[fill[a1]++] = a2;
+            neighbours[fill[a2]++] = a1;
+        }
+
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.adjacency(System.nanoTime() - start);
+
+        return new CsrGraph(n, offsets, neighbours);
+    }
+
+    /**
+     * The atom indices of each bond as consecutive pairs.
+     */
+    static int[] edges(IAtomContainer container) {
+        return edges(container, new AtomIndex().index(container));
+    }
+
+    private static int[] edges(IAtomContainer container, AtomIndex index) {
+        int[] edges = new int[2 * container.getBondCount()];
+        int k = 0;
+        for (IBond bond : container.bonds()) {
+            edges[k++] = index.get(bond.getAtom(0));
+            edges[k++] = index.get(bond.getAtom(1));
+        }
+        return edges;
+    }
+
     public static List<List<Integer>> createList(IAtomContainer container) {
 
+        long start = RingSearchMetrics.ENABLED ? System.nanoTime() : 0;
+
         int n = container.getAtomCount();
 
         List<List<Integer>> graph = new ArrayList<List<Integer>>(n);
+        AtomIndex index = new AtomIndex().index(container);
 
         for (int i = 0; i < n; i++)
             graph.add(new ArrayList<Integer>(6));
@@ -70,12 +459,15 @@ public class BasicRingTester implements RingTester {
 
         // ct table only
         for (IBond bond : container.bonds()) {
-            int i = container.getAtomNumber(bond.getAtom(0));
-            int j = container.getAtomNumber(bond.getAtom(1));
+            int i = index.get(bond.getAtom(0));
+            int j = index.get(bond.getAtom(1));
             graph.get(i).add(j);
             graph.get(j).add(i);
         }
 
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.adjacency(System.nanoTime() - start);
+
         return graph;
 
     }
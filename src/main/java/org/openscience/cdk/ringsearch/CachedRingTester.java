@@ -0,0 +1,124 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * The ring atoms, bonds and systems of a graph as stored by a
+ * {@link RingCache}. The ring bonds are a mask over the CSR neighbour slots,
+ * bit <i>k</i> is set if the edge to <code>neighbours[k]</code> is in a ring.
+ * The tester is immutable.
+ *
+ * @author John May
+ */
+final class CachedRingTester implements RingTester, RingCounts {
+
+    private final int    n;
+    private final int[]  offsets;
+    private final int[]  neighbours;
+    private final long[] atoms;
+    private final long[] edges;
+    private final int[]  systems;
+    private final int    backEdges, nSystems;
+
+    /**
+     * Store the results of a tester, the adjacency is not copied.
+     */
+    CachedRingTester(int n, int[] offsets, int[] neighbours, RingTester tester) {
+        this.n = n;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.atoms = new long[(n + 63) >> 6];
+        this.edges = new long[(offsets[n] + 63) >> 6];
+        for (int u = 0; u < n; u++) {
+            if (tester.isInRing(u))
+                atoms[u >> 6] |= 1L << u;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (tester.isInRing(u, neighbours[k]))
+                    edges[k >> 6] |= 1L << k;
+            }
+        }
+        this.systems = tester.ringSystems();
+        RingCounts counts = (RingCounts) tester;
+        this.backEdges = counts.backEdgeCount();
+        this.nSystems = counts.ringSystemCount();
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] neighbours() {
+        return neighbours;
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    /**
+     * Approximate memory used by the arrays (including the adjacency).
+     *
+     * @return size in bytes
+     */
+    long bytes() {
+        // 16 bytes per array header
+        return 16 * 6 + 4L * (offsets.length + neighbours.length + systems.length)
+                + 8L * (atoms.length + edges.length);
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        return (atoms[i >> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        throw new IllegalStateException("this ring tester does not store containers/atoms");
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        for (int k = offsets[u], end = offsets[u + 1]; k < end; k++) {
+            if (neighbours[k] == v)
+                return (edges[k >> 6] & (1L << k)) != 0;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public int[] ringSystems() {
+        return systems.clone();
+    }
+
+    @Override
+    public int backEdgeCount() {
+        return backEdges;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        return nSystems;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        int count = 0;
+        for (long word : atoms)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    @Override
+    public void ringAtomMask(long[] words) {
+        for (int k = 0; k < atoms.length; k++)
+            words[k] |= atoms[k];
+    }
+
+}
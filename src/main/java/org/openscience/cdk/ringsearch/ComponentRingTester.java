@@ -0,0 +1,194 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+/**
+ * Searches each connected component of a graph separately, with the
+ * narrowest tier that fits the component. A mixture or salt of many small
+ * components can then use the 64-bit tester even though the whole graph has
+ * more than 64 vertices. Acyclic components (trees) are not searched. The
+ * queries are mapped from the original indices to the component and the
+ * ring systems are numbered across all components. The adjacency and testers
+ * of each component are reused by the next search.
+ *
+ * @author John May
+ */
+final class ComponentRingTester implements RingTester, RingCounts {
+
+    private final int        linearThreshold;
+    private final Components components = new Components();
+
+    // for each component: adjacency, tester selection and the current tester
+    private int[][]          offsets    = new int[0][];
+    private int[][]          neighbours = new int[0][];
+    private TierSelector[]   selectors  = new TierSelector[0];
+    private RingTester[]     testers    = new RingTester[0];
+
+    // ring atom mask of a component, in its local indices
+    private long[] local = new long[0];
+
+    /**
+     * @param linearThreshold size above which the linear tester is used
+     */
+    ComponentRingTester(int linearThreshold) {
+        this.linearThreshold = linearThreshold;
+    }
+
+    /**
+     * Search a new graph, if the graph is connected it is searched directly
+     * and that tester is returned.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for a non-recursive search
+     * @return tester of the graph, this tester if there were multiple
+     *         components
+     */
+    RingTester search(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+
+        components.label(n, offsets, neighbours);
+        int count = components.count();
+
+        if (count > selectors.length) {
+            int size = Math.max(count, 2 * selectors.length);
+            this.offsets = Arrays.copyOf(this.offsets, size);
+            this.neighbours = Arrays.copyOf(this.neighbours, size);
+            this.selectors = Arrays.copyOf(selectors, size);
+            this.testers = Arrays.copyOf(testers, size);
+        }
+
+        if (count < 2) {
+            if (selectors[0] == null)
+                selectors[0] = new TierSelector(linearThreshold);
+            return selectors[0].search(n, offsets, neighbours, stack);
+        }
+
+        for (int c = 0; c < count; c++) {
+
+            if (components.isAcyclic(c)) {
+                testers[c] = null;
+                continue;
+            }
+
+            int order = components.order(c);
+            int degree = components.degree(c);
+
+            if (this.offsets[c] == null || this.offsets[c].length < order + 1)
+                this.offsets[c] = new int[order + 1];
+            if (this.neighbours[c] == null || this.neighbours[c].length < degree)
+                this.neighbours[c] = new int[degree];
+            if (selectors[c] == null)
+                selectors[c] = new TierSelector(linearThreshold);
+
+            components.fill(c, offsets, neighbours, this.offsets[c], this.neighbours[c]);
+            testers[c] = selectors[c].search(order, this.offsets[c], this.neighbours[c], stack);
+        }
+
+        return this;
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        RingTester tester = testers[components.component(i)];
+        return tester != null && tester.isInRing(components.local(i));
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        throw new IllegalStateException("this ring tester does not store containers/atoms");
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        int c = components.component(u);
+        if (c != components.component(v) || testers[c] == null)
+            return false;
+        return testers[c].isInRing(components.local(u), components.local(v));
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public int[] ringSystems() {
+        int[] labels = new int[components.order()];
+        Arrays.fill(labels, -1);
+        int base = 0;
+        for (int c = 0; c < components.count(); c++) {
+            if (testers[c] == null)
+                continue;
+            int[] systems = testers[c].ringSystems();
+            int max = -1;
+            for (int l = 0; l < systems.length; l++) {
+                if (systems[l] >= 0) {
+                    labels[components.vertex(c, l)] = base + systems[l];
+                    max = Math.max(max, systems[l]);
+                }
+            }
+            base += max + 1;
+        }
+        return labels;
+    }
+
+    @Override
+    public int order() {
+        return components.order();
+    }
+
+    @Override
+    public int backEdgeCount() {
+        int count = 0;
+        for (int c = 0; c < components.count(); c++) {
+            if (testers[c] != null)
+                count += ((RingCounts) testers[c]).backEdgeCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        int count = 0;
+        for (int c = 0; c < components.count(); c++) {
+            if (testers[c] != null)
+                count += ((RingCounts) testers[c]).ringSystemCount();
+        }
+        return count;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        int count = 0;
+        for (int c = 0; c < components.count(); c++) {
+            if (testers[c] != null)
+                count += ((RingCounts) testers[c]).ringAtomCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void ringAtomMask(long[] words) {
+        for (int c = 0; c < components.count(); c++) {
+            if (testers[c] == null)
+                continue;
+            int size = (components.order(c) + 63) >> 6;
+            if (local.length < size)
+                local = new long[size];
+            Arrays.fill(local, 0, size, 0);
+            ((RingCounts) testers[c]).ringAtomMask(local);
+            // map the local indices back to the graph
+            for (int k = 0; k < size; k++) {
+                for (long mask = local[k]; mask != 0; mask &= mask - 1) {
+                    int v = components.vertex(c, (k << 6) + Long.numberOfTrailingZeros(mask));
+                    words[v >> 6] |= 1L << v;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.Arrays;
+
+/**
+ * The connected components of a graph in CSR form. The vertices are listed
+ * grouped by component (in breadth-first order), component <i>c</i> is
+ * <code>vertices[start[c]]</code> up to <code>vertices[start[c + 1]]</code>
+ * and a vertex's index within its component is its position in that range.
+ * The arrays only grow so the components may be reused.
+ *
+ * @author John May
+ */
+final class Components {
+
+    private int n, count;
+
+    // vertex to component, and to the index within the component
+    private int[] component = new int[0];
+    private int[] local     = new int[0];
+
+    // vertices grouped by component (also the BFS queue)
+    private int[] vertices = new int[0];
+    private int[] start    = new int[1];
+
+    // number of edge end points in each component
+    private int[] degrees = new int[0];
+
+    /**
+     * Find the connected components of a graph.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @return this
+     */
+    Components label(int n, int[] offsets, int[] neighbours) {
+
+        this.n = n;
+        if (component.length < n) {
+            component = new int[n];
+            local = new int[n];
+            vertices = new int[n];
+        }
+        for (int v = 0; v < n; v++)
+            component[v] = -1;
+
+        count = 0;
+        int tail = 0;
+        for (int root = 0; root < n; root++) {
+            if (component[root] >= 0)
+                continue;
+
+            if (start.length < count + 2)
+                start = Arrays.copyOf(start, Math.max(count + 2, 2 * start.length));
+            if (degrees.length < count + 1)
+                degrees = Arrays.copyOf(degrees, Math.max(count + 1, 2 * degrees.length));
+
+            int head = tail, degree = 0;
+            start[count] = head;
+            component[root] = count;
+            vertices[tail++] = root;
+
+            while (head < tail) {
+                int v = vertices[head];
+                local[v] = head++ - start[count];
+                degree += offsets[v + 1] - offsets[v];
+                for (int k = offsets[v], end = offsets[v + 1]; k < end; k++) {
+                    int w = neighbours[k];
+                    if (component[w] < 0) {
+                        component[w] = count;
+                        vertices[tail++] = w;
+                    }
+                }
+            }
+
+            degrees[count++] = degree;
+        }
+        start[count] = tail;
+
+        return this;
+    }
+
+    /**
+     * @return number of vertices in the graph
+     */
+    int order() {
+        return n;
+    }
+
+    /**
+     * @return number of components
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @param c a component
+     * @return number of vertices in the component
+     */
+    int order(int c) {
+        return start[c + 1] - start[c];
+    }
+
+    /**
+     * @param c a component
+     * @return number of edge end points (twice the edges) in the component
+     */
+    int degree(int c) {
+        return degrees[c];
+    }
+
+    /**
+     * A component is acyclic if it is a tree, |E| = |V| - 1.
+     *
+     * @param c a component
+     * @return the component can not contain a ring
+     */
+    boolean isAcyclic(int c) {
+        return degrees[c] == 2 * (order(c) - 1);
+    }
+
+    /**
+     * @param v a vertex
+     * @return the component of the vertex
+     */
+    int component(int v) {
+        return component[v];
+    }
+
+    /**
+     * @param v a vertex
+     * @return index of the vertex within its component
+     */
+    int local(int v) {
+        return local[v];
+    }
+
+    /**
+     * @param c a component
+     * @param l index of a vertex within the component
+     * @return the vertex
+     */
+    int vertex(int c, int l) {
+        return vertices[start[c] + l];
+    }
+
+    /**
+     * Place the adjacency of a component (in local indices) in the provided
+     * CSR arrays.
+     *
+     * @param c             a component
+     * @param offsets       CSR offsets of the graph
+     * @param neighbours    CSR neighbours of the graph
+     * @param subOffsets    offsets to fill (length >= order(c) + 1)
+     * @param subNeighbours neighbours to fill (length >= degree(c))
+     */
+    void fill(int c, int[] offsets, int[] neighbours, int[] subOffsets, int[] subNeighbours) {
+        int k = 0;
+        for (int l = 0, size = order(c); l < size; l++) {
+            int v = vertices[start[c] + l];
+            subOffsets[l] = k;
+            for (int j = offsets[v], end = offsets[v + 1]; j < end; j++)
+                subNeighbours[k++] = local[neighbours[j]];
+        }
+        subOffsets[order(c)] = k;
+    }
+
+}
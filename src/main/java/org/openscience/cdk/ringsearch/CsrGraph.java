@@ -0,0 +1,143 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.List;
+
+/**
+ * A primitive adjacency list stored in compressed sparse row (CSR) form. The
+ * neighbours of vertex <i>v</i> are <code>neighbours[offsets[v]]</code> up to
+ * (but not including) <code>neighbours[offsets[v + 1]]</code>. The arrays are
+ * not copied and may be larger than required, only the first <i>n</i> + 1
+ * offsets are read.
+ *
+ * @author John May
+ */
+public final class CsrGraph {
+
+    private final int   n;
+    private final int[] offsets;
+    private final int[] neighbours;
+
+    /**
+     * Create a graph with <i>n</i> vertices from the provided CSR arrays.
+     *
+     * @param n          number of vertices
+     * @param offsets    start of each vertex's neighbours (length >= n + 1)
+     * @param neighbours the neighbours of each vertex
+     */
+    public CsrGraph(int n, int[] offsets, int[] neighbours) {
+        if (offsets.length < n + 1)
+            throw new IllegalArgumentException("offsets must have at least n + 1 entries");
+        if (neighbours.length < offsets[n])
+            throw new IllegalArgumentException("offsets index past the end of the neighbours");
+        this.n = n;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * Create a graph from the provided CSR arrays, the number of vertices is
+     * one less than the number of offsets.
+     *
+     * @param offsets    start of each vertex's neighbours
+     * @param neighbours the neighbours of each vertex
+     */
+    public CsrGraph(int[] offsets, int[] neighbours) {
+        this(offsets.length - 1, offsets, neighbours);
+    }
+
+    public int order() {
+        return n;
+    }
+
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int[] offsets() {
+        return offsets;
+    }
+
+    public int[] neighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Convert a jagged adjacency list (e.g. from {@link BasicRingTester#create})
+     * to CSR form.
+     *
+     * @param graph adjacency list
+     * @return the graph in CSR form
+     */
+    public static CsrGraph fromAdjacency(int[][] graph) {
+
+        int n = graph.length;
+        int[] offsets = new int[n + 1];
+
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] = offsets[i] + graph[i].length;
+
+        int[] neighbours = new int[offsets[n]];
+        for (int i = 0; i < n; i++)
+            System.arraycopy(graph[i], 0, neighbours, offsets[i], graph[i].length);
+
+        return new CsrGraph(n, offsets, neighbours);
+    }
+
+    /**
+     * Convert a boxed adjacency list (e.g. from {@link BasicRingTester#createList})
+     * to CSR form.
+     *
+     * @param graph adjacency list
+     * @return the graph in CSR form
+     */
+    public static CsrGraph fromAdjacency(List<List<Integer>> graph) {
+
+        int n = graph.size();
+        int[] offsets = new int[n + 1];
+
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] = offsets[i] + graph.get(i).size();
+
+        int[] neighbours = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (int j : graph.get(i))
+                neighbours[k++] = j;
+        }
+
+        return new CsrGraph(n, offsets, neighbours);
+    }
+
+    /**
+     * Place <i>k</i> / 2 edges, stored as consecutive pairs of vertices, in
+     * the provided CSR arrays. The neighbours of each vertex are in the order
+     * of the edges.
+     *
+     * @param n          number of vertices
+     * @param edges      the edges as pairs of vertices
+     * @param k          number of edge end points (2 x number of edges)
+     * @param offsets    CSR offsets to fill (length >= n + 1)
+     * @param neighbours CSR neighbours to fill (length >= k)
+     */
+    static void fill(int n, int[] edges, int k, int[] offsets, int[] neighbours) {
+
+        for (int i = 0; i < n; i++)
+            offsets[i] = 0;
+        for (int i = 0; i < k; i++)
+            offsets[edges[i]]++;
+
+        // offsets[i] is now the end of vertex i's neighbours
+        for (int i = 1; i < n; i++)
+            offsets[i] += offsets[i - 1];
+        offsets[n] = k;
+
+        // fill each vertex's neighbours from the end, leaving the offsets at
+        // the start
+        for (int i = k - 2; i >= 0; i -= 2) {
+            int u = edges[i], v = edges[i + 1];
+            neighbours[--offsets[u]] = v;
+            neighbours[--offsets[v]] = u;
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.Arrays;
+
+/**
+ * The atoms and bonds of a structure which are in a ring, as ascending
+ * indices into the container. Counting, iterating and membership tests
+ * (binary search) use only the index arrays, an {@link IAtomContainer} of the
+ * fragments is only built if {@link #toContainer()} is invoked.
+ *
+ * <blockquote><pre>
+ * CyclicFragments fragments = CyclicFragments.of(container);
+ * for (int k = 0; k &lt; fragments.atomCount(); k++) {
+ *     IAtom atom = container.getAtom(fragments.atom(k));
+ *     ...
+ * }
+ * </pre></blockquote>
+ *
+ * @author John May
+ */
+public final class CyclicFragments {
+
+    private final IAtomContainer container;
+
+    private final int[] atoms, bonds;
+    private final int   nAtoms, nBonds;
+
+    // built on first request
+    private IAtomContainer fragments;
+
+    private CyclicFragments(IAtomContainer container, int[] atoms, int nAtoms, int[] bonds, int nBonds) {
+        this.container = container;
+        this.atoms = atoms;
+        this.nAtoms = nAtoms;
+        this.bonds = bonds;
+        this.nBonds = nBonds;
+    }
+
+    /**
+     * Perceive the rings of the container and extract the cyclic fragments.
+     *
+     * @param container structure
+     * @return the cyclic fragments
+     */
+    public static CyclicFragments of(IAtomContainer container) {
+        int[] edges = BasicRingTester.edges(container);
+        int n = container.getAtomCount();
+        int[] offsets = new int[n + 1];
+        int[] neighbours = new int[edges.length];
+        CsrGraph.fill(n, edges, edges.length, offsets, neighbours);
+        RingTester tester = BasicRingTester.ringTester(new CsrGraph(n, offsets, neighbours));
+        return of(tester, container, edges);
+    }
+
+    /**
+     * Extract the cyclic fragments from a tester of the container.
+     *
+     * @param tester    ring tester for the container
+     * @param container structure
+     * @param edges     the atom indices of each bond as consecutive pairs
+     * @return the cyclic fragments
+     */
+    static CyclicFragments of(RingTester tester, IAtomContainer container, int[] edges) {
+
+        int n = container.getAtomCount();
+        int m = edges.length / 2;
+
+        int[] atoms = new int[n];
+        int nAtoms = 0;
+        if (tester instanceof RegularBasicRingTester) {
+            // visit the set bits of the mask
+            long mask = ((RegularBasicRingTester) tester).ringAtomMask();
+            while (mask != 0) {
+                atoms[nAtoms++] = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (tester.isInRing(i))
+                    atoms[nAtoms++] = i;
+            }
+        }
+
+        int[] bonds = new int[m];
+        int nBonds = 0;
+        if (nAtoms > 0) {
+            for (int b = 0; b < m; b++) {
+                if (tester.isInRing(edges[2 * b], edges[2 * b + 1]))
+                    bonds[nBonds++] = b;
+            }
+        }
+
+        return new CyclicFragments(container, atoms, nAtoms, bonds, nBonds);
+    }
+
+    /**
+     * @return number of atoms in a ring
+     */
+    public int atomCount() {
+        return nAtoms;
+    }
+
+    /**
+     * The index of the <i>k</i>th ring atom, in ascending order.
+     *
+     * @param k 0 &le; k &lt; {@link #atomCount()}
+     * @return index of the atom in the container
+     */
+    public int atom(int k) {
+        if (k >= nAtoms)
+            throw new IndexOutOfBoundsException("ring atom " + k + " of " + nAtoms);
+        return atoms[k];
+    }
+
+    /**
+     * @return the indices of the ring atoms (a copy)
+     */
+    public int[] atoms() {
+        return Arrays.copyOf(atoms, nAtoms);
+    }
+
+    /**
+     * @param atom index of an atom in the container
+     * @return the atom is in a ring
+     */
+    public boolean containsAtom(int atom) {
+        return Arrays.binarySearch(atoms, 0, nAtoms, atom) >= 0;
+    }
+
+    /**
+     * @return number of bonds in a ring
+     */
+    public int bondCount() {
+        return nBonds;
+    }
+
+    /**
+     * The index of the <i>k</i>th ring bond, in ascending order.
+     *
+     * @param k 0 &le; k &lt; {@link #bondCount()}
+     * @return index of the bond in the container
+     */
+    public int bond(int k) {
+        if (k >= nBonds)
+            throw new IndexOutOfBoundsException("ring bond " + k + " of " + nBonds);
+        return bonds[k];
+    }
+
+    /**
+     * @return the indices of the ring bonds (a copy)
+     */
+    public int[] bonds() {
+        return Arrays.copyOf(bonds, nBonds);
+    }
+
+    /**
+     * @param bond index of a bond in the container
+     * @return the bond is in a ring
+     */
+    public boolean containsBond(int bond) {
+        return Arrays.binarySearch(bonds, 0, nBonds, bond) >= 0;
+    }
+
+    /**
+     * A container of the ring atoms and bonds (as in the original
+     * container), built on the first invocation and then reused. The
+     * container is not thread-safe to build, callers sharing the fragments
+     * between threads should invoke this method before sharing.
+     *
+     * @return the cyclic fragments container
+     */
+    public IAtomContainer toContainer() {
+        if (fragments == null) {
+            IAtomContainer fragments = container.getBuilder().newInstance(IAtomContainer.class);
+            for (int k = 0; k < nAtoms; k++)
+                fragments.addAtom(container.getAtom(atoms[k]));
+            for (int k = 0; k < nBonds; k++)
+                fragments.addBond(container.getBond(bonds[k]));
+            this.fragments = fragments;
+        }
+        return fragments;
+    }
+
+}
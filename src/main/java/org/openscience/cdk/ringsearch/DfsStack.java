@@ -0,0 +1,41 @@
+package org.openscience.cdk.ringsearch;
+
+/**
+ * An explicit stack for the non-recursive depth-first searches of the ring
+ * testers. The stack grows to the largest graph searched and can be reused
+ * between searches, it is not thread-safe and should be confined to a single
+ * thread.
+ *
+ * @author John May
+ */
+public final class DfsStack {
+
+    /** vertices on the current path. */
+    int[] vertices;
+
+    /** index of the next neighbour to visit, for each vertex. */
+    int[] next;
+
+    public DfsStack() {
+        this(64);
+    }
+
+    public DfsStack(int capacity) {
+        this.vertices = new int[capacity];
+        this.next = new int[capacity];
+    }
+
+    /**
+     * Ensure the stack can hold a graph with <i>n</i> vertices.
+     *
+     * @param n number of vertices
+     */
+    void ensureCapacity(int n) {
+        if (vertices.length < n) {
+            int capacity = Math.max(n, vertices.length + (vertices.length >> 1));
+            vertices = new int[capacity];
+            next = new int[capacity];
+        }
+    }
+
+}
@@ -0,0 +1,411 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+/**
+ * A ring tester for a graph which is edited, edges may be added and removed
+ * and the ring atoms and bonds are updated without searching the whole
+ * graph again. The tester is initialised from a complete search and then
+ * each edit only searches outward from the vertices of the edge:
+ *
+ * <ul>
+ * <li>adding an edge between connected vertices closes a cycle, the bridges
+ * on a path between the vertices become ring bonds (the other bonds on the
+ * path were already in a ring). The path is found by searching from both
+ * vertices at once, always expanding the side with the smaller frontier,
+ * and stops as soon as the two sides meet. Adding an edge between
+ * disconnected vertices adds a bridge and nothing changes, the search stops
+ * when the smaller side is exhausted.</li>
+ * <li>removing a bridge changes nothing. Removing a ring bond may turn
+ * bonds of its ring system (the 2-edge-connected component) into bridges,
+ * the bridges are found again within that ring system only.</li>
+ * </ul>
+ *
+ * <blockquote><pre>
+ * DynamicRingTester tester = new DynamicRingTester(graph);
+ * tester.removeEdge(4, 5);
+ * tester.isInRing(4); // updated
+ * tester.addEdge(4, 5);
+ * </pre></blockquote>
+ *
+ * Multiple edges between the same vertices are not allowed. The tester is
+ * not thread-safe.
+ *
+ * @author John May
+ */
+public final class DynamicRingTester implements RingTester {
+
+    private final int n;
+
+    // adjacency, and whether each edge is in a ring (in the same slot)
+    private final int[][]     graph;
+    private final boolean[][] cyclicEdges;
+    private final int[]       degree;
+
+    private final long[] cyclic;
+
+    // work arrays for the searches, 'mark' holds the stamp of the last
+    // search which visited a vertex so the arrays need not be cleared
+    private final int[] mark;
+    private final int[] queue;
+    private final int[] pre, low, parent, next, stack;
+    private       int   stamp;
+
+    // the adjacent vertices where the two sides of the path search met
+    private int meetU, meetV;
+
+    /**
+     * Create a tester for a graph, the rings are found with a complete search.
+     *
+     * @param graph the initial graph
+     * @throws IllegalArgumentException the graph has a self loop or multiple
+     *                                  edges
+     */
+    public DynamicRingTester(CsrGraph graph) {
+        this(graph.order());
+        int[] offsets = graph.offsets(), neighbours = graph.neighbours();
+        for (int u = 0; u < n; u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbours[k];
+                if (u < v) {
+                    if (slot(u, v) >= 0)
+                        throw new IllegalArgumentException("multiple edges between " + u + " and " + v);
+                    append(u, v);
+                } else if (u == v)
+                    throw new IllegalArgumentException("self loop on vertex " + u);
+            }
+        }
+        RingTester tester = BasicRingTester.ringTester(graph);
+        for (int u = 0; u < n; u++) {
+            if (tester.isInRing(u))
+                cyclic[u >> 6] |= 1L << u;
+            for (int k = 0; k < degree[u]; k++)
+                cyclicEdges[u][k] = tester.isInRing(u, this.graph[u][k]);
+        }
+    }
+
+    /**
+     * Create a tester for a graph of <i>n</i> vertices and no edges.
+     *
+     * @param n number of vertices
+     */
+    public DynamicRingTester(int n) {
+        this.n = n;
+        this.graph = new int[n][4];
+        this.cyclicEdges = new boolean[n][4];
+        this.degree = new int[n];
+        this.cyclic = new long[(n + 63) >> 6];
+        this.mark = new int[n];
+        this.queue = new int[n];
+        this.pre = new int[n];
+        this.low = new int[n];
+        this.parent = new int[n];
+        this.next = new int[n];
+        this.stack = new int[n];
+    }
+
+    /**
+     * @return number of vertices
+     */
+    public int order() {
+        return n;
+    }
+
+    /**
+     * Add an edge between <i>u</i> and <i>v</i> and update the ring atoms and
+     * bonds.
+     *
+     * @param u a vertex
+     * @param v another vertex
+     * @throws IllegalArgumentException the vertices are the same or already
+     *                                  adjacent
+     */
+    public void addEdge(int u, int v) {
+
+        if (u == v)
+            throw new IllegalArgumentException("self loop on vertex " + u);
+        if (slot(u, v) >= 0)
+            throw new IllegalArgumentException("vertices " + u + " and " + v + " are already adjacent");
+
+        // the path to v from u, if there is no path the new edge is a bridge
+        boolean connected = path(u, v);
+        append(u, v);
+        if (!connected)
+            return;
+
+        // the cycle is the new edge, the edge where the searches met and the
+        // paths from there back to u and v
+        setCyclic(u, v, true);
+        setCyclic(meetU, meetV, true);
+        close(meetU);
+        close(meetV);
+    }
+
+    /**
+     * Remove the edge between <i>u</i> and <i>v</i> and update the ring atoms
+     * and bonds.
+     *
+     * @param u a vertex
+     * @param v another vertex
+     * @throws IllegalArgumentException the vertices are not adjacent
+     */
+    public void removeEdge(int u, int v) {
+
+        int k = slot(u, v);
+        if (k < 0)
+            throw new IllegalArgumentException("vertices " + u + " and " + v + " are not adjacent");
+
+        boolean wasCyclic = cyclicEdges[u][k];
+        delete(u, k);
+        delete(v, slot(v, u));
+
+        // removing a bridge does not change any cycles
+        if (!wasCyclic)
+            return;
+
+        // the ring system of the edge, the vertices connected by ring bonds
+        stamp++;
+        int size = region(u, 0);
+        if (mark[v] != stamp)
+            size = region(v, size);
+
+        // find the bridges of the ring system again
+        for (int i = 0; i < size; i++)
+            pre[queue[i]] = 0;
+        int time = 0;
+        for (int i = 0; i < size; i++) {
+            if (pre[queue[i]] == 0)
+                time = bridges(queue[i], time);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int w = queue[i];
+            boolean ring = false;
+            for (int j = 0; j < degree[w] && !ring; j++)
+                ring = cyclicEdges[w][j];
+            if (ring)
+                cyclic[w >> 6] |= 1L << w;
+            else
+                cyclic[w >> 6] &= ~(1L << w);
+        }
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        return (cyclic[i >> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        throw new IllegalStateException("this ring tester does not store containers/atoms");
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        int k = slot(u, v);
+        return k >= 0 && cyclicEdges[u][k];
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public int[] ringSystems() {
+        // the ring systems are the components connected by ring bonds
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int count = 0;
+        stamp++;
+        for (int v = 0; v < n; v++) {
+            if (isInRing(v) && mark[v] != stamp) {
+                int size = region(v, 0);
+                for (int i = 0; i < size; i++)
+                    labels[queue[i]] = count;
+                count++;
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Bidirectional breadth-first search between <i>u</i> and <i>v</i>. The
+     * side of <i>u</i> is marked with one stamp and queued from the front of
+     * the queue, the side of <i>v</i> with the next stamp and queued from the
+     * back. A vertex is taken from the side with fewer queued vertices until
+     * a vertex of the other side is reached (the edge is stored in
+     * {@link #meetU} and {@link #meetV}) or a side has nothing left to visit.
+     * The parent of each visited vertex leads back to <i>u</i> or <i>v</i>,
+     * which have no parent.
+     *
+     * @return u and v are connected
+     */
+    private boolean path(int u, int v) {
+
+        int su = ++stamp, sv = ++stamp;
+
+        int uHead = 0, uTail = 0, vHead = n - 1, vTail = n - 1;
+        mark[u] = su;
+        parent[u] = -1;
+        queue[uTail++] = u;
+        mark[v] = sv;
+        parent[v] = -1;
+        queue[vTail--] = v;
+
+        while (uHead < uTail && vHead > vTail) {
+            boolean fromU = uTail - uHead <= vHead - vTail;
+            int w = fromU ? queue[uHead++] : queue[vHead--];
+            int own = fromU ? su : sv, other = fromU ? sv : su;
+            for (int k = 0; k < degree[w]; k++) {
+                int x = graph[w][k];
+                if (mark[x] == other) {
+                    meetU = fromU ? w : x;
+                    meetV = fromU ? x : w;
+                    return true;
+                }
+                if (mark[x] != own) {
+                    mark[x] = own;
+                    parent[x] = w;
+                    if (fromU)
+                        queue[uTail++] = x;
+                    else
+                        queue[vTail--] = x;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mark the vertices and edges on the path from <i>w</i> back to the start
+     * of its side of the search ({@link #path(int, int)}) as being in a ring.
+     */
+    private void close(int w) {
+        for (; parent[w] >= 0; w = parent[w]) {
+            setCyclic(w, parent[w], true);
+            cyclic[w >> 6] |= 1L << w;
+        }
+        cyclic[w >> 6] |= 1L << w;
+    }
+
+    /**
+     * Add the vertices connected to <i>u</i> by ring bonds to the queue
+     * (marked with the current stamp).
+     *
+     * @param u    start vertex
+     * @param tail current size of the queue
+     * @return the size of the queue
+     */
+    private int region(int u, int tail) {
+        int head = tail;
+        mark[u] = stamp;
+        queue[tail++] = u;
+        while (head < tail) {
+            int w = queue[head++];
+            for (int k = 0; k < degree[w]; k++) {
+                int x = graph[w][k];
+                if (cyclicEdges[w][k] && mark[x] != stamp) {
+                    mark[x] = stamp;
+                    queue[tail++] = x;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Non-recursive low-point search over the ring bonds from <i>root</i>,
+     * ring bonds which are now bridges are cleared.
+     *
+     * @param root start vertex
+     * @param time current discovery time
+     * @return discovery time after the search
+     */
+    private int bridges(int root, int time) {
+
+        int sp = 0;
+        pre[root] = low[root] = ++time;
+        parent[root] = -1;
+        next[root] = 0;
+        stack[sp++] = root;
+
+        while (sp > 0) {
+            int w = stack[sp - 1];
+            if (next[w] < degree[w]) {
+                int k = next[w]++;
+                if (!cyclicEdges[w][k])
+                    continue;
+                int x = graph[w][k];
+                if (pre[x] == 0) {
+                    pre[x] = low[x] = ++time;
+                    parent[x] = w;
+                    next[x] = 0;
+                    stack[sp++] = x;
+                } else if (x != parent[w] && pre[x] < low[w]) {
+                    low[w] = pre[x];
+                }
+            } else {
+                int p = parent[w];
+                sp--;
+                if (p >= 0) {
+                    if (low[w] < low[p])
+                        low[p] = low[w];
+                    if (low[w] > pre[p])
+                        setCyclic(w, p, false);
+                }
+            }
+        }
+
+        return time;
+    }
+
+    /**
+     * The index of <i>v</i> in the neighbours of <i>u</i>, -1 if not adjacent.
+     */
+    private int slot(int u, int v) {
+        int[] ws = graph[u];
+        for (int k = 0, d = degree[u]; k < d; k++) {
+            if (ws[k] == v)
+                return k;
+        }
+        return -1;
+    }
+
+    private void setCyclic(int u, int v, boolean value) {
+        cyclicEdges[u][slot(u, v)] = value;
+        cyclicEdges[v][slot(v, u)] = value;
+    }
+
+    /**
+     * Append the edge to the adjacency (not in a ring).
+     */
+    private void append(int u, int v) {
+        add(u, v);
+        add(v, u);
+    }
+
+    private void add(int u, int v) {
+        int d = degree[u]++;
+        if (d == graph[u].length) {
+            graph[u] = Arrays.copyOf(graph[u], 2 * d);
+            cyclicEdges[u] = Arrays.copyOf(cyclicEdges[u], 2 * d);
+        }
+        graph[u][d] = v;
+        cyclicEdges[u][d] = false;
+    }
+
+    /**
+     * Remove the neighbour in slot <i>k</i> of <i>u</i>, the last neighbour
+     * is moved to the slot.
+     */
+    private void delete(int u, int k) {
+        int last = --degree[u];
+        graph[u][k] = graph[u][last];
+        cyclicEdges[u][k] = cyclicEdges[u][last];
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * A replacement for the ring membership queries of CDK's
+ * <code>SpanningTree</code>, backed by the ring testers. The rings are
+ * perceived on construction and the {@link CDKConstants#ISINRING} flag of
+ * every atom and bond is set (or cleared) in a single pass, callers which
+ * only read the flags need do nothing else. The cyclic fragments container is
+ * only built if requested, from the indices of the ring atoms and bonds
+ * ({@link CyclicFragments}) rather than testing whether the container
+ * already holds each atom.
+ *
+ * <blockquote><pre>
+ * // was: new SpanningTree(container).getCyclicFragmentsContainer()
+ * IAtomContainer cyclic = new FastSpanningTree(container).getCyclicFragmentsContainer();
+ * </pre></blockquote>
+ *
+ * @author John May
+ */
+public final class FastSpanningTree {
+
+    private final IAtomContainer  container;
+    private final CsrGraph        graph;
+    private final CyclicFragments fragments;
+
+    // number of connected components, counted on first use
+    private int nComponents = -1;
+
+    public FastSpanningTree(IAtomContainer container) {
+        this(container, BasicRingTester.DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    /**
+     * Perceive the rings of the container and flag the atoms and bonds.
+     *
+     * @param container       structure
+     * @param linearThreshold size above which the linear tester is used
+     */
+    public FastSpanningTree(IAtomContainer container, int linearThreshold) {
+
+        this.container = container;
+
+        int n = container.getAtomCount();
+        int[] edges = BasicRingTester.edges(container);
+        int[] offsets = new int[n + 1];
+        int[] neighbours = new int[edges.length];
+        CsrGraph.fill(n, edges, edges.length, offsets, neighbours);
+        this.graph = new CsrGraph(n, offsets, neighbours);
+
+        this.fragments = CyclicFragments.of(BasicRingTester.ringTester(graph, linearThreshold),
+                                            container, edges);
+
+        // the fragment indices are ascending, merge them with all indices
+        for (int i = 0, k = 0; i < n; i++) {
+            boolean cyclic = k < fragments.atomCount() && fragments.atom(k) == i;
+            container.getAtom(i).setFlag(CDKConstants.ISINRING, cyclic);
+            if (cyclic)
+                k++;
+        }
+        for (int b = 0, k = 0, m = container.getBondCount(); b < m; b++) {
+            boolean cyclic = k < fragments.bondCount() && fragments.bond(k) == b;
+            container.getBond(b).setFlag(CDKConstants.ISINRING, cyclic);
+            if (cyclic)
+                k++;
+        }
+    }
+
+    /**
+     * The container of the atoms and bonds which are in a ring, in the order
+     * they appear in the original container. The container is built on the
+     * first invocation.
+     *
+     * @return the cyclic fragments
+     */
+    public IAtomContainer getCyclicFragmentsContainer() {
+        return fragments.toContainer();
+    }
+
+    /**
+     * The indices of the atoms and bonds which are in a ring.
+     *
+     * @return the cyclic fragments
+     */
+    public CyclicFragments getCyclicFragments() {
+        return fragments;
+    }
+
+    /**
+     * The number of bonds which close a ring (the circuit rank), this is the
+     * number of bonds not in a spanning tree, |E| - |V| + components.
+     *
+     * @return number of ring closures
+     */
+    public int getBondsCyclicCount() {
+        return container.getBondCount() - getSpanningTreeSize();
+    }
+
+    /**
+     * The number of bonds which are in a spanning tree (forest) of the
+     * structure, |V| - components.
+     *
+     * @return size of the spanning tree
+     */
+    public int getSpanningTreeSize() {
+        return container.getAtomCount() - components();
+    }
+
+    /**
+     * @return the structure has more than one connected component
+     */
+    public boolean isDisconnected() {
+        return components() > 1;
+    }
+
+    /**
+     * @param atom an atom of the container
+     * @return the atom is in a ring
+     */
+    public boolean isInRing(IAtom atom) {
+        return atom.getFlag(CDKConstants.ISINRING);
+    }
+
+    /**
+     * @param bond a bond of the container
+     * @return the bond is in a ring
+     */
+    public boolean isInRing(IBond bond) {
+        return bond.getFlag(CDKConstants.ISINRING);
+    }
+
+    /**
+     * @return number of atoms in a ring
+     */
+    public int getRingAtomCount() {
+        return fragments.atomCount();
+    }
+
+    /**
+     * @return number of bonds in a ring
+     */
+    public int getRingBondCount() {
+        return fragments.bondCount();
+    }
+
+    private int components() {
+        if (nComponents < 0)
+            nComponents = new Components().label(graph.order(), graph.offsets(), graph.neighbours()).count();
+        return nComponents;
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.openscience.cdk.ringsearch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+/**
+ * Random access to the graphs stored by a {@link GraphLibraryWriter}. The
+ * file is memory-mapped and a record is found in O(1) through the offset
+ * index. The adjacency of a record is read straight from the mapping into
+ * the caller's arrays, which are reused while large enough - reading a
+ * library into a {@link RingSearchWorkspace} does not parse or allocate.
+ * Records are numbered in the order they were written.
+ *
+ * <blockquote><pre>
+ * GraphLibrary library = GraphLibrary.open(new File("library.graphs"));
+ * RingSearchWorkspace workspace = new RingSearchWorkspace();
+ * int[] offsets = null, neighbours = null;
+ * for (int i = 0; i &lt; library.size(); i++) {
+ *     offsets = library.offsets(i, offsets);
+ *     neighbours = library.neighbours(i, neighbours);
+ *     RingTester tester = workspace.perceive(library.atomCount(i), offsets, neighbours);
+ *     ...
+ * }
+ * library.close();
+ * </pre></blockquote>
+ *
+ * A library is safe to read from multiple threads. Files larger than 2 GB
+ * are not supported.
+ *
+ * @author John May
+ */
+public final class GraphLibrary implements Closeable {
+
+    private final IndexedFile file;
+    private final IntBuffer   ints;
+
+    private GraphLibrary(IndexedFile file) {
+        this.file = file;
+        // every field of a record is an int, the records are read as ints
+        this.ints = file.buffer().asIntBuffer();
+    }
+
+    /**
+     * Open (memory-map) a library.
+     *
+     * @param file the library
+     * @return the library
+     * @throws IOException the file could not be mapped or was not a library
+     */
+    public static GraphLibrary open(File file) throws IOException {
+        return new GraphLibrary(IndexedFile.open(file, GraphLibraryWriter.MAGIC, GraphLibraryWriter.VERSION,
+                                                 "graph library"));
+    }
+
+    /**
+     * Does a file start with the magic number of a graph library.
+     *
+     * @param file a file
+     * @return the file is (probably) a graph library
+     */
+    public static boolean isLibrary(File file) {
+        return IndexedFile.hasMagic(file, GraphLibraryWriter.MAGIC);
+    }
+
+    /**
+     * @return number of records
+     */
+    public int size() {
+        return file.size();
+    }
+
+    /**
+     * @param record record number
+     * @return number of atoms in the record
+     */
+    public int atomCount(int record) {
+        return ints.get(offset(record));
+    }
+
+    /**
+     * @param record record number
+     * @return number of bonds in the record
+     */
+    public int bondCount(int record) {
+        return ints.get(offset(record) + 1) / 2;
+    }
+
+    /**
+     * Read the CSR offsets of a record (atoms + 1 values).
+     *
+     * @param record  record number
+     * @param offsets array to fill, a new array is used if this is null or
+     *                too small
+     * @return the offsets
+     */
+    public int[] offsets(int record, int[] offsets) {
+        int offset = offset(record);
+        int n = ints.get(offset);
+        if (offsets == null || offsets.length < n + 1)
+            offsets = new int[Math.max(n + 1, offsets == null ? 0 : 2 * offsets.length)];
+        offset += 2;
+        for (int i = 0; i <= n; i++)
+            offsets[i] = ints.get(offset + i);
+        return offsets;
+    }
+
+    /**
+     * Read the CSR neighbours of a record (twice the bonds values).
+     *
+     * @param record     record number
+     * @param neighbours array to fill, a new array is used if this is null
+     *                   or too small
+     * @return the neighbours
+     */
+    public int[] neighbours(int record, int[] neighbours) {
+        int offset = offset(record);
+        int n = ints.get(offset);
+        int k = ints.get(offset + 1);
+        if (neighbours == null || neighbours.length < k)
+            neighbours = new int[Math.max(k, neighbours == null ? 0 : 2 * neighbours.length)];
+        offset += 3 + n;
+        for (int i = 0; i < k; i++)
+            neighbours[i] = ints.get(offset + i);
+        return neighbours;
+    }
+
+    /**
+     * The graph of a record, in new arrays.
+     *
+     * @param record record number
+     * @return the graph
+     */
+    public CsrGraph graph(int record) {
+        int n = atomCount(record);
+        int[] offsets = offsets(record, new int[n + 1]);
+        int[] neighbours = neighbours(record, new int[offsets[n]]);
+        return new CsrGraph(n, offsets, neighbours);
+    }
+
+    /**
+     * The index (in ints) of a record.
+     */
+    private int offset(int record) {
+        return file.offset(record) >> 2;
+    }
+
+    /**
+     * Close the file, the mapping is released when the library is garbage
+     * collected and must not be read after closing.
+     *
+     * @throws IOException the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
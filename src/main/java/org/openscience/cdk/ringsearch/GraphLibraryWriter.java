@@ -0,0 +1,146 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the adjacency of a sequence of molecules to a packed binary file,
+ * read with a {@link GraphLibrary}. A library is converted once (e.g. from
+ * an SDF with {@link #convert(MolfileGraphReader, File)}) and the rings can
+ * then be perceived repeatedly without parsing. Each record is the CSR form
+ * of one molecule, the offsets of a record start at 0 so a record can be
+ * searched directly. An index of the record offsets is written when the
+ * writer is closed.
+ *
+ * <blockquote><pre>
+ * GraphLibraryWriter writer = new GraphLibraryWriter(new File("library.graphs"));
+ * for (IAtomContainer container : containers)
+ *     writer.write(container);
+ * writer.close();
+ * </pre></blockquote>
+ *
+ * The layout (big-endian) is:
+ * <ul>
+ * <li>header: magic (int), version (int), record count (long), index
+ * offset (long)</li>
+ * <li>records: atom count (int), neighbour count (int, twice the bonds),
+ * offsets (int[atoms + 1]), neighbours (int[neighbour count])</li>
+ * <li>index: the offset of each record (long[count])</li>
+ * </ul>
+ *
+ * @author John May
+ */
+public final class GraphLibraryWriter implements Closeable {
+
+    static final int MAGIC   = 0x4353524c; // 'CSRL'
+    static final int VERSION = 1;
+
+    private final IndexedFile.Writer file;
+
+    public GraphLibraryWriter(File file) throws IOException {
+        this.file = new IndexedFile.Writer(file, MAGIC, VERSION);
+    }
+
+    /**
+     * Convert the connection tables read by a reader into a library, the
+     * reader is read to the end but not closed. Query records are skipped
+     * (as the container readers skip query structures).
+     *
+     * @param reader connection table reader
+     * @param file   the library to write
+     * @return number of records written
+     * @throws IOException the input could not be read or the library written
+     */
+    public static int convert(MolfileGraphReader reader, File file) throws IOException {
+        return convert(reader, file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Convert the connection tables read by a reader into a library, the
+     * reader is read to the end but not closed. Query records and records
+     * of <i>maxAtoms</i> atoms or more are skipped.
+     *
+     * @param reader   connection table reader
+     * @param file     the library to write
+     * @param maxAtoms records of this many atoms or more are skipped
+     * @return number of records written
+     * @throws IOException the input could not be read or the library written
+     */
+    public static int convert(MolfileGraphReader reader, File file, int maxAtoms) throws IOException {
+        GraphLibraryWriter writer = new GraphLibraryWriter(file);
+        try {
+            while (reader.next()) {
+                if (reader.atomCount() >= maxAtoms || reader.isQuery())
+                    continue;
+                writer.write(reader.atomCount(), reader.offsets(), reader.neighbours());
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.count();
+    }
+
+    /**
+     * Write the adjacency of a container.
+     *
+     * @param container structure
+     * @throws IOException the record could not be written
+     */
+    public void write(IAtomContainer container) throws IOException {
+        write(BasicRingTester.createCsr(container));
+    }
+
+    /**
+     * Write a graph.
+     *
+     * @param graph the graph
+     * @throws IOException the record could not be written
+     */
+    public void write(CsrGraph graph) throws IOException {
+        write(graph.order(), graph.offsets(), graph.neighbours());
+    }
+
+    /**
+     * Write a graph in CSR form.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @throws IOException the record could not be written
+     */
+    public void write(int n, int[] offsets, int[] neighbours) throws IOException {
+
+        int start = offsets[0];
+        int k = offsets[n] - start;
+
+        DataOutputStream out = file.record(4L * (3 + n + k));
+        out.writeInt(n);
+        out.writeInt(k);
+        for (int i = 0; i <= n; i++)
+            out.writeInt(offsets[i] - start);
+        for (int i = 0; i < k; i++)
+            out.writeInt(neighbours[start + i]);
+    }
+
+    /**
+     * @return number of records written
+     */
+    public int count() {
+        return file.count();
+    }
+
+    /**
+     * Write the index and complete the header.
+     *
+     * @throws IOException the file could not be completed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
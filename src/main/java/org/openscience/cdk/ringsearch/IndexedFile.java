@@ -0,0 +1,212 @@
+package org.openscience.cdk.ringsearch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The file format of the {@link GraphLibrary} and {@link RingMaskStore}, a
+ * sequence of records followed by an index of their offsets. The layout
+ * (big-endian) is:
+ * <ul>
+ * <li>header: magic (int), version (int), record count (long), index
+ * offset (long)</li>
+ * <li>records: written by the {@link Writer} owner</li>
+ * <li>index: the offset of each record (long[count])</li>
+ * </ul>
+ *
+ * The count and index offset are only written when the writer is closed, a
+ * file which was not completed is rejected when opened. The file is
+ * memory-mapped for reading, files larger than 2 GB are not supported.
+ *
+ * @author John May
+ */
+final class IndexedFile implements Closeable {
+
+    static final int HEADER_SIZE = 24;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    private final int              count;
+    private final int              index;
+
+    private IndexedFile(RandomAccessFile raf, int magic, int version, String name) throws IOException {
+        this.raf = raf;
+        FileChannel channel = raf.getChannel();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("a " + name + " larger than 2 GB is not supported");
+        if (size < HEADER_SIZE)
+            throw new IOException("not a " + name + " (too small)");
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt(0) != magic)
+            throw new IOException("not a " + name + " (bad magic number)");
+        if (buffer.getInt(4) != version)
+            throw new IOException("unsupported " + name + " version: " + buffer.getInt(4));
+        long count = buffer.getLong(8);
+        long index = buffer.getLong(16);
+        if (count < 0 || index < HEADER_SIZE || index + 8 * count != size)
+            throw new IOException(name + " is incomplete (was the writer closed?)");
+        this.count = (int) count;
+        this.index = (int) index;
+    }
+
+    /**
+     * Open (memory-map) a file and check its header.
+     *
+     * @param file    the file
+     * @param magic   the expected magic number
+     * @param version the expected version
+     * @param name    name of the format, for error messages
+     * @return the opened file
+     * @throws IOException the file could not be mapped or was not of the
+     *                     format
+     */
+    static IndexedFile open(File file, int magic, int version, String name) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new IndexedFile(raf, magic, version, name);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Does a file start with a magic number.
+     *
+     * @param file  a file
+     * @param magic the magic number
+     * @return the file (probably) has the format
+     */
+    static boolean hasMagic(File file, int magic) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readInt() == magic;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the mapping of the whole file
+     */
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return number of records
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * The offset (in bytes) of a record.
+     *
+     * @param record record number
+     * @return the offset
+     */
+    int offset(int record) {
+        if (record < 0 || record >= count)
+            throw new IndexOutOfBoundsException("record " + record + " of " + count);
+        return (int) buffer.getLong(index + 8 * record);
+    }
+
+    /**
+     * Close the file, the mapping is released when it is garbage collected.
+     *
+     * @throws IOException the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Writes the header, the index and (through {@link #record(long)}) the
+     * records.
+     */
+    static final class Writer implements Closeable {
+
+        private final File             file;
+        private final DataOutputStream out;
+
+        private long   position = HEADER_SIZE;
+        private long[] index    = new long[1024];
+        private int    count;
+
+        Writer(File file, int magic, int version) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            // the count and index offset are written on close
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeLong(0);
+            out.writeLong(0);
+        }
+
+        /**
+         * Start a new record, exactly <i>length</i> bytes must then be
+         * written to the returned stream.
+         *
+         * @param length the size of the record in bytes
+         * @return the output
+         * @throws IOException the file would be larger than 2 GB
+         */
+        DataOutputStream record(long length) throws IOException {
+            if (position + length + 8L * (count + 1) > Integer.MAX_VALUE)
+                throw new IOException("files larger than 2 GB are not supported");
+            if (count == index.length)
+                index = Arrays.copyOf(index, 2 * count);
+            index[count++] = position;
+            position += length;
+            return out;
+        }
+
+        /**
+         * @return number of records written
+         */
+        int count() {
+            return count;
+        }
+
+        /**
+         * Write the index and complete the header.
+         *
+         * @throws IOException the file could not be completed
+         */
+        @Override
+        public void close() throws IOException {
+            for (int i = 0; i < count; i++)
+                out.writeLong(index[i]);
+            out.close();
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(8);
+                raf.writeLong(count);
+                raf.writeLong(position);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+}
@@ -1,40 +1,187 @@
 package org.openscience.cdk.ringsearch;
 
 import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
 
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.List;
 
-class JumboBasicRingTester implements RingTester {
+class JumboBasicRingTester implements RingTester, RingCounts {
 
-    private final List<List<Integer>> graph;
-    private final int n;
+    private int[] offsets;
+    private int[] neighbours;
+    private int n;
     private final BitSet visited;
     private final BitSet rings;
 
+    // bit 'v' is set if the edge from 'v' to its parent is in a ring
+    private final BitSet ringEdges;
+    private int[] parent;
+
+    // disjoint-set forest of the ring systems
+    private int[] systems;
+
     // search stack
-    private final BitSet[] stack;
+    private BitSet[] stack;
     private final BitSet EMPTY;
+    private final BitSet cycle;
+
+    // a lazy search only explores the component of each queried vertex,
+    // complete once every vertex has been visited (see searchLazily)
+    private volatile boolean complete;
+    private DfsStack         lazyStack;
+
+    // back edges found, the circuit rank
+    private int backEdges;
 
-    protected JumboBasicRingTester(List<List<Integer>> graph) {
-        this.graph = graph;
-        this.n = graph.size();
-        this.visited = new BitSet(n);
-        this.rings = new BitSet(n);
+    // ring systems merged, there is one system per ring atom less merges
+    private int merges;
 
-        this.stack = new BitSet[n];
-        this.EMPTY = new BitSet(n);
+    /**
+     * Create a tester for reuse, no graph is searched until {@link #search}
+     * is invoked.
+     */
+    JumboBasicRingTester() {
+        this.visited = new BitSet();
+        this.rings = new BitSet();
+        this.ringEdges = new BitSet();
+        this.EMPTY = new BitSet();
+        this.cycle = new BitSet();
+        this.parent = new int[0];
+        this.stack = new BitSet[0];
+    }
+
+    protected JumboBasicRingTester(CsrGraph graph) {
+        this(graph.order(), graph.offsets(), graph.neighbours());
+    }
+
+    protected JumboBasicRingTester(CsrGraph graph, DfsStack dfs) {
+        this(graph.order(), graph.offsets(), graph.neighbours(), dfs);
+    }
+
+    protected JumboBasicRingTester(int n, int[] offsets, int[] neighbours) {
+        this(n, offsets, neighbours, null);
+    }
+
+    /**
+     * Create the tester, if a <i>dfs</i> stack is provided the search is
+     * non-recursive.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param dfs        explicit stack for a non-recursive search (may be null)
+     */
+    protected JumboBasicRingTester(int n, int[] offsets, int[] neighbours, DfsStack dfs) {
+        this();
+        search(n, offsets, neighbours, dfs);
+    }
+
+    /**
+     * Search a new graph, any state from the previous graph is cleared and
+     * the arrays are reused where possible.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param dfs        explicit stack for a non-recursive search (may be null)
+     */
+    void search(int n, int[] offsets, int[] neighbours, DfsStack dfs) {
+
+        reset(n, offsets, neighbours);
+
+        if (dfs != null)
+            dfs.ensureCapacity(n);
 
         // check from all unvisited vertices
         for (int i = 0; i < n; i++) {
-            if (!visited(i)) check(i, EMPTY, copy(EMPTY));
+            if (!visited(i)) {
+                if (dfs != null)
+                    check(i, dfs);
+                else
+                    check(i, EMPTY, copy(EMPTY));
+            }
         }
 
+        this.complete = true;
 
+        if (RingSearchMetrics.ENABLED) {
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.JUMBO);
+            RingSearchMetrics.dfs(n, backEdges);
+        }
+    }
+
+    /**
+     * Prepare to search a new graph lazily, the connected component of a
+     * vertex is only searched when the vertex (or a bond of it) is first
+     * queried. The queries are synchronized until every component has been
+     * searched.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     */
+    void searchLazily(int n, int[] offsets, int[] neighbours) {
+        reset(n, offsets, neighbours);
+        if (lazyStack == null)
+            lazyStack = new DfsStack(n);
+        lazyStack.ensureCapacity(n);
+        this.complete = n == 0;
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.JUMBO);
+    }
+
+    private void reset(int n, int[] offsets, int[] neighbours) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.n = n;
+
+        visited.clear();
+        rings.clear();
+        ringEdges.clear();
+
+        if (parent.length < n) {
+            parent = new int[n];
+            stack = Arrays.copyOf(stack, n);
+        }
+        Arrays.fill(parent, 0, n, -1);
+        systems = RingSystems.forest(systems, n);
+        backEdges = 0;
+        merges = 0;
+    }
+
+    /**
+     * Search the component of vertex <i>i</i> if it has not been visited.
+     */
+    private void explore(int i) {
+        if (!visited(i)) {
+            int before = visited.cardinality();
+            int backEdges = this.backEdges;
+            check(i, lazyStack);
+            int count = visited.cardinality();
+            if (RingSearchMetrics.ENABLED)
+                RingSearchMetrics.dfs(count - before, this.backEdges - backEdges);
+            complete = count == n;
+        }
+    }
+
+    /**
+     * Search every component not yet visited.
+     */
+    private synchronized void exploreAll() {
+        for (int i = 0; i < n; i++)
+            explore(i);
     }
 
     @Override
     public boolean isInRing(int i) {
+        if (!complete)
+            return isInRingLazily(i);
+        return rings.get(i);
+    }
+
+    private synchronized boolean isInRingLazily(int i) {
+        explore(i);
         return rings.get(i);
     }
 
@@ -43,6 +190,36 @@ class JumboBasicRingTester implements RingTester {
         throw new IllegalStateException("this ring tester does not store containers/atoms");
     }
 
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        if (!complete)
+            return isInRingLazily(u, v);
+        return isEdgeInRing(u, v);
+    }
+
+    private synchronized boolean isInRingLazily(int u, int v) {
+        // u and v are adjacent and so in the same component
+        explore(u);
+        return isEdgeInRing(u, v);
+    }
+
+    private boolean isEdgeInRing(int u, int v) {
+        if (!rings.get(u) || !rings.get(v))
+            return false;
+        // tree edges are only cyclic if they were in a cycle, back edges
+        // (to an ancestor) always are
+        if (parent[v] == u)
+            return ringEdges.get(v);
+        if (parent[u] == v)
+            return ringEdges.get(u);
+        return true;
+    }
+
     public boolean visited(int i) {
         return visited.get(i);
     }
@@ -56,19 +233,137 @@ class JumboBasicRingTester implements RingTester {
         path.set(i);
         visited.set(i);
 
-        for (int j : graph.get(i)) {
+        for (int k = offsets[i], end = offsets[i + 1]; k < end; k++) {
+            int j = neighbours[k];
             if (visited(j)) {
                 if (parentPath.get(j)) {
-                    registerCycle(xor(stack[j], path));
+                    registerCycle(xor(stack[j], path), j);
                 }
             } else {
+                parent[j] = i;
                 check(j, stack[i], copy(path));
             }
         }
     }
 
-    public void registerCycle(BitSet cycle) {
+    /**
+     * Do a complete non-recursive DFS from <i>vertex</i> root. The path to each
+     * vertex is copied once (when it is discovered) into a set kept from the
+     * previous search and cycles are formed in a single reused set.
+     *
+     * @param root start vertex
+     * @param dfs  explicit stack (at least n capacity)
+     */
+    private void check(int root, DfsStack dfs) {
+
+        final int[] vertices = dfs.vertices;
+        final int[] next = dfs.next;
+        int sp = 0;
+
+        path(root).clear();
+        visited.set(root);
+        next[root] = offsets[root];
+        vertices[sp++] = root;
+
+        while (sp > 0) {
+
+            int i = vertices[sp - 1];
+
+            if (next[i] == offsets[i + 1]) {
+                sp--;
+                continue;
+            }
+
+            int    j          = neighbours[next[i]++];
+            BitSet parentPath = sp > 1 ? stack[vertices[sp - 2]] : EMPTY;
+
+            if (visited(j)) {
+                if (parentPath.get(j)) {
+                    cycle.clear();
+                    cycle.or(stack[i]);
+                    cycle.set(i);
+                    cycle.xor(stack[j]);
+                    registerCycle(cycle, j);
+                }
+            } else {
+                BitSet path = path(j);
+                path.clear();
+                path.or(stack[i]);
+                path.set(i);
+                parent[j] = i;
+                visited.set(j);
+                next[j] = offsets[j];
+                vertices[sp++] = j;
+            }
+        }
+    }
+
+    /**
+     * Access the path set of vertex <i>v</i>, creating it if needed.
+     */
+    private BitSet path(int v) {
+        BitSet path = stack[v];
+        if (path == null)
+            stack[v] = path = new BitSet(n);
+        return path;
+    }
+
+    /**
+     * Register a cycle found by a back edge to the vertex <i>j</i>, the cycle
+     * set is modified.
+     *
+     * @param cycle vertices of the cycle
+     * @param j     the vertex that closes the cycle (first on the path)
+     */
+    public void registerCycle(BitSet cycle, int j) {
+        backEdges++;
         rings.or(cycle);
+        cycle.clear(j);
+        cycle.andNot(ringEdges);
+        // newly cyclic tree edges join their ends into one ring system
+        for (int v = cycle.nextSetBit(0); v >= 0; v = cycle.nextSetBit(v + 1))
+            if (RingSystems.union(systems, v, parent[v]))
+                merges++;
+        ringEdges.or(cycle);
+    }
+
+    @Override
+    public int[] ringSystems() {
+        if (!complete)
+            exploreAll();
+        return RingSystems.label(systems, this, n);
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int backEdgeCount() {
+        if (!complete)
+            exploreAll();
+        return backEdges;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        return ringAtomCount() - merges;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        if (!complete)
+            exploreAll();
+        return rings.cardinality();
+    }
+
+    @Override
+    public void ringAtomMask(long[] words) {
+        if (!complete)
+            exploreAll();
+        for (int v = rings.nextSetBit(0); v >= 0; v = rings.nextSetBit(v + 1))
+            words[v >> 6] |= 1L << v;
     }
 
     private static BitSet xor(BitSet set1, BitSet set2) {
@@ -0,0 +1,120 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of latencies (or any non-negative values) with a
+ * fixed relative precision, in the style of an HDR histogram. Values below
+ * 32 are counted exactly, larger values are counted in one of 32 linear
+ * sub-buckets of their power of two, a recorded value is therefore reported
+ * within ~3% (1/32) of its true value. Recording is a few shifts and an
+ * atomic increment, the memory used is fixed (~15 KB) whatever the range.
+ *
+ * @author John May
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB      = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB);
+    private final AtomicLong      count  = new AtomicLong();
+    private final AtomicLong      total  = new AtomicLong();
+    private final AtomicLong      max    = new AtomicLong();
+
+    /**
+     * Record a value.
+     *
+     * @param value the value (negative values are recorded as 0)
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value))
+            ;
+    }
+
+    /**
+     * The bucket of a value.
+     */
+    static int index(long value) {
+        if (value < SUB)
+            return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB - 1);
+        return (magnitude - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /**
+     * The largest value counted in a bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB)
+            return index;
+        int magnitude = index / SUB - 1 + SUB_BITS;
+        int sub = index % SUB;
+        long width = 1L << (magnitude - SUB_BITS);
+        return (1L << magnitude) + sub * width + width - 1;
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return largest value recorded
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of the values recorded (0 if none)
+     */
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / (double) n;
+    }
+
+    /**
+     * The value at a percentile, at most the largest value recorded.
+     *
+     * @param percentile the percentile (0-100)
+     * @return value at the percentile (0 if none were recorded)
+     */
+    public long percentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++)
+            n += counts.get(i);
+        if (n == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Clear the histogram (not atomic with concurrent recording).
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+}
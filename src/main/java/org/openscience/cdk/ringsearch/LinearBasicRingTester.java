@@ -0,0 +1,309 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+/**
+ * A ring tester for very large graphs. Rather than storing the path to each
+ * vertex the tester finds the bridges of the graph (Tarjan's low-point) - a
+ * vertex is in a ring if and only if it is incident to an edge which is not a
+ * bridge. The search is non-recursive and uses only primitive arrays, time and
+ * memory are therefore both O(n+m).
+ *
+ * @author John May
+ */
+class LinearBasicRingTester implements RingTester, RingCounts {
+
+    private int[] offsets;
+    private int[] neighbours;
+    private int n;
+
+    // discovery order (0 = unvisited) and low-point of each vertex
+    private int[] pre;
+    private int[] low;
+    private int[] parent;
+
+    private long[] cyclic;
+
+    // disjoint-set forest of the ring systems
+    private int[] systems;
+
+    // the current discovery time, also the number of vertices visited
+    private int time;
+
+    // a lazy search only explores the component of each queried vertex,
+    // complete once every vertex has been visited (see searchLazily)
+    private volatile boolean complete;
+    private DfsStack         lazyStack;
+
+    // back edges found, the circuit rank
+    private int backEdges;
+
+    // ring systems merged, there is one system per ring atom less merges
+    private int merges;
+
+    /**
+     * Create a tester for reuse, no graph is searched until {@link #search}
+     * is invoked.
+     */
+    LinearBasicRingTester() {
+        this.pre = new int[0];
+        this.cyclic = new long[0];
+    }
+
+    protected LinearBasicRingTester(CsrGraph graph) {
+        this(graph.order(), graph.offsets(), graph.neighbours());
+    }
+
+    protected LinearBasicRingTester(CsrGraph graph, DfsStack stack) {
+        this(graph.order(), graph.offsets(), graph.neighbours(), stack);
+    }
+
+    protected LinearBasicRingTester(int n, int[] offsets, int[] neighbours) {
+        this(n, offsets, neighbours, new DfsStack(n));
+    }
+
+    protected LinearBasicRingTester(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+        this();
+        search(n, offsets, neighbours, stack);
+    }
+
+    /**
+     * Search a new graph, any state from the previous graph is cleared and
+     * the arrays are reused where possible.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for the search
+     */
+    void search(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+
+        reset(n, offsets, neighbours);
+
+        stack.ensureCapacity(n);
+
+        // check from all unvisited vertices
+        for (int i = 0; i < n; i++) {
+            if (pre[i] == 0) check(i, stack.vertices, stack.next);
+        }
+
+        this.complete = true;
+
+        if (RingSearchMetrics.ENABLED) {
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.LINEAR);
+            RingSearchMetrics.dfs(n, backEdges);
+        }
+    }
+
+    /**
+     * Prepare to search a new graph lazily, the connected component of a
+     * vertex is only searched when the vertex (or a bond of it) is first
+     * queried. The queries are synchronized until every component has been
+     * searched.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     */
+    void searchLazily(int n, int[] offsets, int[] neighbours) {
+        reset(n, offsets, neighbours);
+        if (lazyStack == null)
+            lazyStack = new DfsStack(n);
+        lazyStack.ensureCapacity(n);
+        this.complete = n == 0;
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.LINEAR);
+    }
+
+    private void reset(int n, int[] offsets, int[] neighbours) {
+
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.n = n;
+
+        if (pre.length < n) {
+            this.pre = new int[n];
+            this.low = new int[n];
+            this.parent = new int[n];
+            this.cyclic = new long[(n + 63) >> 6];
+        } else {
+            Arrays.fill(pre, 0, n, 0);
+            Arrays.fill(cyclic, 0, (n + 63) >> 6, 0);
+        }
+        this.systems = RingSystems.forest(systems, n);
+        this.time = 0;
+        this.backEdges = 0;
+        this.merges = 0;
+    }
+
+    /**
+     * Search the component of vertex <i>i</i> if it has not been visited.
+     */
+    private void explore(int i) {
+        if (pre[i] == 0) {
+            int before = time;
+            int backEdges = this.backEdges;
+            check(i, lazyStack.vertices, lazyStack.next);
+            if (RingSearchMetrics.ENABLED)
+                RingSearchMetrics.dfs(time - before, this.backEdges - backEdges);
+            complete = time == n;
+        }
+    }
+
+    /**
+     * Search every component not yet visited.
+     */
+    private synchronized void exploreAll() {
+        for (int i = 0; i < n; i++)
+            explore(i);
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        if (!complete)
+            return isInRingLazily(i);
+        return (cyclic[i >> 6] & (1L << i)) != 0;
+    }
+
+    private synchronized boolean isInRingLazily(int i) {
+        explore(i);
+        return (cyclic[i >> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        throw new IllegalStateException("this ring tester does not store containers/atoms");
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        if (!complete)
+            return isInRingLazily(u, v);
+        return isEdgeInRing(u, v);
+    }
+
+    private synchronized boolean isInRingLazily(int u, int v) {
+        // u and v are adjacent and so in the same component
+        explore(u);
+        return isEdgeInRing(u, v);
+    }
+
+    private boolean isEdgeInRing(int u, int v) {
+        // a tree edge is in a ring if it is not a bridge, back edges always are
+        if (parent[v] == u)
+            return low[v] <= pre[u];
+        if (parent[u] == v)
+            return low[u] <= pre[v];
+        return true;
+    }
+
+    @Override
+    public int[] ringSystems() {
+        if (!complete)
+            exploreAll();
+        return RingSystems.label(systems, this, n);
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int backEdgeCount() {
+        if (!complete)
+            exploreAll();
+        return backEdges;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        return ringAtomCount() - merges;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        if (!complete)
+            exploreAll();
+        int count = 0;
+        for (int k = 0, end = (n + 63) >> 6; k < end; k++)
+            count += Long.bitCount(cyclic[k]);
+        return count;
+    }
+
+    @Override
+    public void ringAtomMask(long[] words) {
+        if (!complete)
+            exploreAll();
+        for (int k = 0, end = (n + 63) >> 6; k < end; k++)
+            words[k] |= cyclic[k];
+    }
+
+    private void registerCycle(int i) {
+        cyclic[i >> 6] |= 1L << i;
+    }
+
+    /**
+     * Do a complete (non-recursive) DFS from <i>root</i>.
+     *
+     * @param root   start vertex
+     * @param stack  vertices on the current path
+     * @param next   the index of the next neighbour to visit for each vertex
+     */
+    private void check(int root, int[] stack, int[] next) {
+
+        int sp = 0;
+        int time = this.time;
+
+        pre[root] = low[root] = ++time;
+        parent[root] = -1;
+        next[root] = offsets[root];
+        stack[sp++] = root;
+
+        while (sp > 0) {
+
+            int v = stack[sp - 1];
+
+            if (next[v] < offsets[v + 1]) {
+                int w = neighbours[next[v]++];
+                if (pre[w] == 0) {
+                    pre[w] = low[w] = ++time;
+                    parent[w] = v;
+                    next[w] = offsets[w];
+                    stack[sp++] = w;
+                } else if (w != parent[v]) {
+                    // each back edge is seen from both ends, count it once
+                    if (pre[w] < pre[v])
+                        backEdges++;
+                    if (pre[w] < low[v])
+                        low[v] = pre[w];
+                }
+            } else {
+                int p = parent[v];
+                sp--;
+                if (p >= 0) {
+                    if (low[v] < low[p])
+                        low[p] = low[v];
+                    // the edge to the parent is not a bridge
+                    if (low[v] <= pre[p]) {
+                        registerCycle(v);
+                        registerCycle(p);
+                        if (RingSystems.union(systems, v, p))
+                            merges++;
+                    }
+                }
+            }
+        }
+
+        this.time = time;
+    }
+
+}
@@ -0,0 +1,345 @@
+package org.openscience.cdk.ringsearch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Reads the connection tables of an SDF (V2000 or V3000) directly into a
+ * primitive adjacency list. Only the counts and the bond block are parsed -
+ * no atoms, bonds or containers are created. The file is read through a
+ * reused NIO buffer and the adjacency of each record is placed in arrays
+ * which grow to the largest record, reading does not allocate after warm-up.
+ *
+ * <blockquote><pre>
+ * MolfileGraphReader reader = new MolfileGraphReader(new File("library.sdf"));
+ * RingSearchWorkspace workspace = new RingSearchWorkspace();
+ * while (reader.next()) {
+ *     RingTester tester = workspace.perceive(reader.atomCount(),
+ *                                            reader.offsets(),
+ *                                            reader.neighbours());
+ * }
+ * reader.close();
+ * </pre></blockquote>
+ *
+ * The arrays are overwritten by the next record. Multiple bonds between the
+ * same atoms are not merged (as with the container adjacency). Records with
+ * query features are read but flagged ({@link #isQuery()}) so they can be
+ * skipped as the container readers skip query structures.
+ *
+ * @author John May
+ */
+public final class MolfileGraphReader implements Closeable {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer          buffer;
+
+    // the current line
+    private byte[] line = new byte[128];
+    private int    len;
+    private int    pos;
+
+    // the current record
+    private int   n, m;
+    private int[] edges      = new int[128];
+    private int[] offsets    = new int[65];
+    private int[] neighbours = new int[128];
+    private boolean query;
+
+    public MolfileGraphReader(File file) throws IOException {
+        this(new FileInputStream(file).getChannel());
+    }
+
+    /**
+     * Read from a channel, e.g. <code>Channels.newChannel(new GZIPInputStream(in))</code>
+     * for compressed input.
+     *
+     * @param channel the channel to read
+     */
+    public MolfileGraphReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.buffer.flip();
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return a record was read, false at the end of the input
+     * @throws IOException the input could not be read or a connection table
+     *                     was malformed
+     */
+    public boolean next() throws IOException {
+
+        // header block (title, program and comment)
+        for (int i = 0; i < 3; i++) {
+            if (!readLine())
+                return false;
+        }
+
+        if (!readLine())
+            throw new IOException("record has no counts line");
+
+        query = false;
+        if (contains("V3000"))
+            readV3000();
+        else
+            readV2000();
+
+        // skip the rest of the record, a V2000 atom list is in the properties
+        while (readLine()) {
+            if (startsWith("$$$$"))
+                break;
+            if (startsWith("M  ALS"))
+                query = true;
+        }
+
+        if (offsets.length < n + 1)
+            offsets = new int[Math.max(n + 1, 2 * offsets.length)];
+        if (neighbours.length < 2 * m)
+            neighbours = new int[edges.length];
+
+        CsrGraph.fill(n, edges, 2 * m, offsets, neighbours);
+        return true;
+    }
+
+    /**
+     * @return number of atoms in the current record
+     */
+    public int atomCount() {
+        return n;
+    }
+
+    /**
+     * @return number of bonds in the current record
+     */
+    public int bondCount() {
+        return m;
+    }
+
+    /**
+     * @return the atoms of each bond of the current record as consecutive
+     *         pairs, in the order of the bond block (length >= 2m)
+     */
+    public int[] edges() {
+        return edges;
+    }
+
+    /**
+     * @return CSR offsets of the current record (length >= n + 1)
+     */
+    public int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * @return CSR neighbours of the current record
+     */
+    public int[] neighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Whether the current record is a query, it has query bonds (types 5 to
+     * 8) or atom lists. CDK reads such a record as an
+     * <code>IQueryAtomContainer</code>.
+     *
+     * @return the current record is a query
+     */
+    public boolean isQuery() {
+        return query;
+    }
+
+    private void readV2000() throws IOException {
+
+        n = parseInt(0, 3);
+        m = parseInt(3, 6);
+        ensureBonds(m);
+
+        for (int i = 0; i < n; i++) {
+            if (!readLine())
+                throw new IOException("truncated atom block");
+            // the symbol of an atom list
+            if (len > 31 && line[31] == 'L' && (len == 32 || line[32] == ' '))
+                query = true;
+        }
+
+        for (int i = 0; i < m; i++) {
+            if (!readLine())
+                throw new IOException("truncated bond block");
+            addBond(i, parseInt(0, 3), parseInt(3, 6));
+            if (isQueryBond(parseInt(6, 9)))
+                query = true;
+        }
+    }
+
+    private void readV3000() throws IOException {
+
+        n = m = 0;
+        int bonds = 0;
+        boolean inAtomBlock = false, inBondBlock = false;
+        boolean continued = false;
+
+        while (readLine()) {
+            if (!startsWith("M  V30 ")) {
+                if (startsWith("M  END"))
+                    break;
+                continue;
+            }
+            boolean continues = len > 0 && line[len - 1] == '-';
+            if (continued) {
+                // continuation of the previous line, the atoms were on the first
+                continued = continues;
+                continue;
+            }
+            continued = continues;
+            pos = 7;
+            if (startsWith("M  V30 COUNTS")) {
+                pos = 13;
+                n = nextInt();
+                m = nextInt();
+                ensureBonds(m);
+            } else if (startsWith("M  V30 BEGIN ATOM")) {
+                inAtomBlock = true;
+            } else if (startsWith("M  V30 END ATOM")) {
+                inAtomBlock = false;
+            } else if (startsWith("M  V30 BEGIN BOND")) {
+                inBondBlock = true;
+            } else if (startsWith("M  V30 END BOND")) {
+                inBondBlock = false;
+            } else if (inAtomBlock) {
+                nextInt(); // index
+                // the type of an atom list is '[...]' or 'NOT [...]'
+                while (pos < len && line[pos] == ' ')
+                    pos++;
+                if (pos < len && (line[pos] == '[' || (pos + 3 < len && line[pos] == 'N' && line[pos + 1] == 'O'
+                        && line[pos + 2] == 'T' && line[pos + 3] == ' ')))
+                    query = true;
+            } else if (inBondBlock) {
+                nextInt(); // index
+                if (isQueryBond(nextInt()))
+                    query = true;
+                if (bonds == m)
+                    throw new IOException("more bonds than the counts line");
+                addBond(bonds++, nextInt(), nextInt());
+            }
+        }
+
+        if (bonds != m)
+            throw new IOException("expected " + m + " bonds, read " + bonds);
+    }
+
+    /**
+     * Bond types 5 to 8 (single or double, single or aromatic, double or
+     * aromatic and any) are only used in queries.
+     */
+    private static boolean isQueryBond(int type) {
+        return type >= 5 && type <= 8;
+    }
+
+    private void ensureBonds(int m) {
+        if (edges.length < 2 * m)
+            edges = new int[Math.max(2 * m, 2 * edges.length)];
+    }
+
+    /**
+     * Store bond <i>i</i> between the atoms <i>a1</i> and <i>a2</i> (numbered
+     * from 1).
+     */
+    private void addBond(int i, int a1, int a2) throws IOException {
+        if (a1 < 1 || a1 > n || a2 < 1 || a2 > n)
+            throw new IOException("bond " + (i + 1) + " references an atom out of range");
+        edges[2 * i] = a1 - 1;
+        edges[2 * i + 1] = a2 - 1;
+    }
+
+    /**
+     * Read the next line (without the line terminator) into the line buffer.
+     *
+     * @return a line was read
+     */
+    private boolean readLine() throws IOException {
+        len = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0)
+                    return len > 0;
+                continue;
+            }
+            byte b = buffer.get();
+            if (b == '\n')
+                return true;
+            if (b == '\r')
+                continue;
+            if (len == line.length)
+                line = Arrays.copyOf(line, 2 * len);
+            line[len++] = b;
+        }
+    }
+
+    private boolean startsWith(String prefix) {
+        if (len < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[i] != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean contains(String str) {
+        for (int i = 0; i + str.length() <= len; i++) {
+            int j = 0;
+            while (j < str.length() && line[i + j] == str.charAt(j))
+                j++;
+            if (j == str.length())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parse the fixed width integer field between <i>beg</i> and <i>end</i>.
+     */
+    private int parseInt(int beg, int end) throws IOException {
+        int value = 0;
+        boolean digits = false;
+        for (int i = beg; i < end && i < len; i++) {
+            byte b = line[i];
+            if (b == ' ')
+                continue;
+            if (b < '0' || b > '9')
+                throw new IOException("invalid number in line: " + new String(line, 0, len, "US-ASCII"));
+            value = 10 * value + (b - '0');
+            digits = true;
+        }
+        if (!digits)
+            throw new IOException("missing number in line: " + new String(line, 0, len, "US-ASCII"));
+        return value;
+    }
+
+    /**
+     * Parse the next space separated integer from the current position.
+     */
+    private int nextInt() throws IOException {
+        while (pos < len && line[pos] == ' ')
+            pos++;
+        int beg = pos;
+        while (pos < len && line[pos] != ' ')
+            pos++;
+        return parseInt(beg, pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
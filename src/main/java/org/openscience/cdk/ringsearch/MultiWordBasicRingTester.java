@@ -0,0 +1,389 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+/**
+ * A ring tester for graphs of 65 to 256 vertices which stores the path to
+ * each vertex as a fixed number (2-4) of 64-bit words. The words of all
+ * vertices are held in one flat array, vertex <i>v</i>'s path is
+ * <code>state[v * words]</code> up to <code>state[(v + 1) * words]</code>, so
+ * unlike the {@link JumboBasicRingTester} no {@link java.util.BitSet}s are
+ * cloned during the search. The search is always non-recursive.
+ *
+ * @author John May
+ */
+class MultiWordBasicRingTester implements RingTester, RingCounts {
+
+    /** maximum number of vertices (4 x 64-bit words). */
+    static final int MAX_VERTICES = 256;
+
+    private int[] offsets;
+    private int[] neighbours;
+    private int n;
+
+    // number of words per mask, 1 + (n - 1) / 64
+    private int words;
+
+    private final long[] visited = new long[4];
+    private final long[] cyclic  = new long[4];
+
+    // bit 'v' is set if the edge from 'v' to its parent is in a ring
+    private final long[] cyclicEdges = new long[4];
+
+    // one mask (of 'words' words) for each ring system
+    private long[] systems;
+    private int    nSystems;
+
+    // search state, the path to each vertex
+    private long[] state;
+
+    // the vertices of the cycle being registered
+    private final long[] cycle = new long[4];
+
+    // a lazy search only explores the component of each queried vertex,
+    // complete once every vertex has been visited (see searchLazily)
+    private volatile boolean complete;
+    private DfsStack         lazyStack;
+
+    // back edges found, the circuit rank
+    private int backEdges;
+
+    /**
+     * Create a tester for reuse, no graph is searched until {@link #search}
+     * is invoked.
+     */
+    MultiWordBasicRingTester() {
+        this.state = new long[0];
+        this.systems = new long[16];
+    }
+
+    protected MultiWordBasicRingTester(CsrGraph graph) {
+        this(graph.order(), graph.offsets(), graph.neighbours(), new DfsStack(graph.order()));
+    }
+
+    protected MultiWordBasicRingTester(CsrGraph graph, DfsStack stack) {
+        this(graph.order(), graph.offsets(), graph.neighbours(), stack);
+    }
+
+    /**
+     * Create the tester and search the graph.
+     *
+     * @param n          number of vertices (at most 256)
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for the search
+     */
+    protected MultiWordBasicRingTester(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+        this();
+        search(n, offsets, neighbours, stack);
+    }
+
+    /**
+     * Search a new graph, any state from the previous graph is cleared and
+     * the arrays are reused where possible.
+     *
+     * @param n          number of vertices (at most 256)
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for the search
+     */
+    void search(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+
+        reset(n, offsets, neighbours);
+
+        stack.ensureCapacity(n);
+
+        // check from all unvisited vertices
+        for (int i = 0; i < n; i++) {
+            if (!isBitSet(visited, 0, i))
+                check(i, stack);
+        }
+
+        this.complete = true;
+
+        if (RingSearchMetrics.ENABLED) {
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.MULTI_WORD);
+            RingSearchMetrics.dfs(n, backEdges);
+        }
+    }
+
+    /**
+     * Prepare to search a new graph lazily, the connected component of a
+     * vertex is only searched when the vertex (or a bond of it) is first
+     * queried. The queries are synchronized until every component has been
+     * searched.
+     *
+     * @param n          number of vertices (at most 256)
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     */
+    void searchLazily(int n, int[] offsets, int[] neighbours) {
+        reset(n, offsets, neighbours);
+        if (lazyStack == null)
+            lazyStack = new DfsStack(n);
+        lazyStack.ensureCapacity(n);
+        this.complete = n == 0;
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.MULTI_WORD);
+    }
+
+    private void reset(int n, int[] offsets, int[] neighbours) {
+
+        if (n > MAX_VERTICES)
+            throw new IllegalArgumentException("at most " + MAX_VERTICES + " vertices, graph had " + n);
+
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.n = n;
+        this.words = n == 0 ? 1 : 1 + ((n - 1) >>> 6);
+
+        if (state.length < n * words)
+            this.state = new long[n * words];
+        Arrays.fill(visited, 0);
+        Arrays.fill(cyclic, 0);
+        Arrays.fill(cyclicEdges, 0);
+        this.nSystems = 0;
+        this.backEdges = 0;
+    }
+
+    /**
+     * Search the component of vertex <i>i</i> if it has not been visited.
+     */
+    private void explore(int i) {
+        if (!isBitSet(visited, 0, i)) {
+            int before = visitedCount();
+            int backEdges = this.backEdges;
+            check(i, lazyStack);
+            int count = visitedCount();
+            if (RingSearchMetrics.ENABLED)
+                RingSearchMetrics.dfs(count - before, this.backEdges - backEdges);
+            complete = count == n;
+        }
+    }
+
+    private int visitedCount() {
+        int count = 0;
+        for (int k = 0; k < words; k++)
+            count += Long.bitCount(visited[k]);
+        return count;
+    }
+
+    /**
+     * Search every component not yet visited.
+     */
+    private synchronized void exploreAll() {
+        for (int i = 0; i < n; i++)
+            explore(i);
+    }
+
+    private static boolean isBitSet(long[] masks, int offset, int bit) {
+        return (masks[offset + (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private static void setBit(long[] masks, int offset, int bit) {
+        masks[offset + (bit >>> 6)] |= 1L << bit;
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        throw new IllegalStateException("this ring tester does not store containers/atoms");
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        if (!complete)
+            return isInRingLazily(i);
+        return isBitSet(cyclic, 0, i);
+    }
+
+    private synchronized boolean isInRingLazily(int i) {
+        explore(i);
+        return isBitSet(cyclic, 0, i);
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        if (!complete)
+            return isInRingLazily(u, v);
+        return isEdgeInRing(u, v);
+    }
+
+    private synchronized boolean isInRingLazily(int u, int v) {
+        // u and v are adjacent and so in the same component
+        explore(u);
+        return isEdgeInRing(u, v);
+    }
+
+    private boolean isEdgeInRing(int u, int v) {
+        if (!isBitSet(cyclic, 0, u) || !isBitSet(cyclic, 0, v))
+            return false;
+        // tree edges are only cyclic if they were in a cycle, back edges
+        // (to an ancestor) always are
+        if (isChild(u, v))
+            return isBitSet(cyclicEdges, 0, v);
+        if (isChild(v, u))
+            return isBitSet(cyclicEdges, 0, u);
+        return true;
+    }
+
+    /**
+     * Is <i>v</i> a child of <i>u</i> in the DFS tree, i.e. the path to
+     * <i>v</i> is the path to <i>u</i> and <i>u</i>.
+     */
+    private boolean isChild(int u, int v) {
+        int uOffset = u * words, vOffset = v * words;
+        int uWord = u >>> 6;
+        for (int k = 0; k < words; k++) {
+            long expected = k == uWord ? state[uOffset + k] | (1L << u) : state[uOffset + k];
+            if (state[vOffset + k] != expected)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Register the cycle (in {@link #cycle}) found by a back edge to the
+     * vertex <i>j</i>.
+     *
+     * @param j the vertex that closes the cycle (first on the path)
+     */
+    private void registerCycle(int j) {
+
+        backEdges++;
+
+        int jWord = j >>> 6;
+        for (int k = 0; k < words; k++) {
+            cyclic[k] |= cycle[k];
+            cyclicEdges[k] |= k == jWord ? cycle[k] & ~(1L << j) : cycle[k];
+        }
+
+        // merge any systems the cycle shares atoms with
+        int k = 0;
+        for (int s = 0; s < nSystems; s++) {
+            int offset = s * words;
+            if (intersects(systems, offset, cycle)) {
+                for (int w = 0; w < words; w++)
+                    cycle[w] |= systems[offset + w];
+            } else {
+                if (k != s)
+                    System.arraycopy(systems, offset, systems, k * words, words);
+                k++;
+            }
+        }
+        if ((k + 1) * words > systems.length)
+            systems = Arrays.copyOf(systems, 2 * systems.length);
+        System.arraycopy(cycle, 0, systems, k * words, words);
+        nSystems = k + 1;
+    }
+
+    private boolean intersects(long[] masks, int offset, long[] mask) {
+        for (int k = 0; k < words; k++) {
+            if ((masks[offset + k] & mask[k]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int[] ringSystems() {
+        if (!complete)
+            exploreAll();
+        return RingSystems.label(systems, nSystems, words, n);
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int backEdgeCount() {
+        if (!complete)
+            exploreAll();
+        return backEdges;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        if (!complete)
+            exploreAll();
+        return nSystems;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        if (!complete)
+            exploreAll();
+        int count = 0;
+        for (int k = 0; k < words; k++)
+            count += Long.bitCount(cyclic[k]);
+        return count;
+    }
+
+    @Override
+    public void ringAtomMask(long[] mask) {
+        if (!complete)
+            exploreAll();
+        for (int k = 0; k < words; k++)
+            mask[k] |= cyclic[k];
+    }
+
+    /**
+     * Do a complete non-recursive DFS from <i>vertex</i> root, the path to
+     * each vertex (not including the vertex) is stored in the state.
+     *
+     * @param root  start vertex
+     * @param stack explicit stack (at least n capacity)
+     */
+    private void check(int root, DfsStack stack) {
+
+        final int[] vertices = stack.vertices;
+        final int[] next = stack.next;
+        final int words = this.words;
+        int sp = 0;
+
+        Arrays.fill(state, root * words, (root + 1) * words, 0);
+        setBit(visited, 0, root);
+        next[root] = offsets[root];
+        vertices[sp++] = root;
+
+        while (sp > 0) {
+
+            int i = vertices[sp - 1];
+
+            if (next[i] == offsets[i + 1]) {
+                sp--;
+                continue;
+            }
+
+            int j = neighbours[next[i]++];
+
+            if (isBitSet(visited, 0, j)) {
+                // back edge to an ancestor of the parent
+                if (sp > 1 && isBitSet(state, vertices[sp - 2] * words, j)) {
+                    // the path from j to i
+                    int iOffset = i * words, jOffset = j * words;
+                    for (int k = 0; k < words; k++)
+                        cycle[k] = state[jOffset + k] ^ state[iOffset + k];
+                    setBit(cycle, 0, i);
+                    registerCycle(j);
+                }
+            } else {
+                System.arraycopy(state, i * words, state, j * words, words);
+                setBit(state, j * words, i);
+                setBit(visited, 0, j);
+                next[j] = offsets[j];
+                vertices[sp++] = j;
+            }
+        }
+    }
+
+}
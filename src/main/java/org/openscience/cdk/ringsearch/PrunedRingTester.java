@@ -0,0 +1,118 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+/**
+ * Answers ring queries on a graph from a tester of its {@link TwoCore}. A
+ * vertex removed from the core is never in a ring, the queries of core
+ * vertices are mapped to the core index. If the core is empty the graph is
+ * acyclic and there is no tester.
+ *
+ * @author John May
+ */
+final class PrunedRingTester implements RingTester, RingCounts {
+
+    private final TwoCore core;
+    private       RingTester tester;
+
+    // ring atom mask of the core, in the core indices
+    private long[] local = new long[0];
+
+    /**
+     * @param core   the core of the graph
+     * @param tester tester of the core (null if the core is empty)
+     */
+    PrunedRingTester(TwoCore core, RingTester tester) {
+        this.core = core;
+        this.tester = tester;
+    }
+
+    /**
+     * Use a new tester, the core has been recomputed.
+     *
+     * @param tester tester of the core (null if the core is empty)
+     */
+    void set(RingTester tester) {
+        this.tester = tester;
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        int c = core.toCore(i);
+        return c >= 0 && tester.isInRing(c);
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        throw new IllegalStateException("this ring tester does not store containers/atoms");
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        int cu = core.toCore(u), cv = core.toCore(v);
+        return cu >= 0 && cv >= 0 && tester.isInRing(cu, cv);
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
+    @Override
+    public int[] ringSystems() {
+        int[] labels = new int[core.graphOrder()];
+        Arrays.fill(labels, -1);
+        if (tester != null) {
+            int[] systems = tester.ringSystems();
+            for (int c = 0; c < systems.length; c++)
+                labels[core.toGraph(c)] = systems[c];
+        }
+        return labels;
+    }
+
+    @Override
+    public int order() {
+        return core.graphOrder();
+    }
+
+    /**
+     * The vertices removed from the core are not in a ring and removing them
+     * does not change the circuit rank, each removed vertex takes an edge
+     * (or a component if isolated) with it.
+     */
+    @Override
+    public int backEdgeCount() {
+        return tester != null ? ((RingCounts) tester).backEdgeCount() : 0;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        return tester != null ? ((RingCounts) tester).ringSystemCount() : 0;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        return tester != null ? ((RingCounts) tester).ringAtomCount() : 0;
+    }
+
+    @Override
+    public void ringAtomMask(long[] words) {
+        if (tester == null)
+            return;
+        int size = (core.order() + 63) >> 6;
+        if (local.length < size)
+            local = new long[size];
+        Arrays.fill(local, 0, size, 0);
+        ((RingCounts) tester).ringAtomMask(local);
+        for (int k = 0; k < size; k++) {
+            for (long mask = local[k]; mask != 0; mask &= mask - 1) {
+                int v = core.toGraph((k << 6) + Long.numberOfTrailingZeros(mask));
+                words[v >> 6] |= 1L << v;
+            }
+        }
+    }
+
+}
@@ -1,37 +1,158 @@
 package org.openscience.cdk.ringsearch;
 
 import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
 
-import java.util.BitSet;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * @author John May
  */
-class RegularBasicRingTester implements RingTester {
+class RegularBasicRingTester implements RingTester, RingCounts {
 
-    private final List<List<Integer>> graph;
-    private final int n;
+    private int[] offsets;
+    private int[] neighbours;
+    private int n;
     private long visited;
     private long cyclic;
 
+    // bit 'v' is set if the edge from 'v' to its parent is in a ring
+    private long cyclicEdges;
+
+    // one mask for each ring system
+    private long[] systems;
+    private int nSystems;
+
     // search state
-    private final long[] state;
+    private long[] state;
 
-    protected RegularBasicRingTester(List<List<Integer>> graph) {
+    // a lazy search only explores the component of each queried vertex,
+    // complete once every vertex has been visited (see searchLazily)
+    private volatile boolean complete;
 
-        this.graph = graph;
-        this.n = graph.size();
+    // back edges found, the circuit rank
+    private int backEdges;
 
-        this.state = new long[n];
-        this.visited = 0;
-        this.cyclic = 0;
+    /**
+     * Create a tester for reuse, no graph is searched until {@link #search}
+     * is invoked.
+     */
+    RegularBasicRingTester() {
+        this.state = new long[0];
+    }
+
+    protected RegularBasicRingTester(CsrGraph graph) {
+        this(graph.order(), graph.offsets(), graph.neighbours());
+    }
+
+    protected RegularBasicRingTester(CsrGraph graph, DfsStack stack) {
+        this(graph.order(), graph.offsets(), graph.neighbours(), stack);
+    }
+
+    protected RegularBasicRingTester(int n, int[] offsets, int[] neighbours) {
+        this(n, offsets, neighbours, null);
+    }
+
+    /**
+     * Create the tester, if a <i>stack</i> is provided the search is
+     * non-recursive.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for a non-recursive search (may be null)
+     */
+    protected RegularBasicRingTester(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+        this();
+        search(n, offsets, neighbours, stack);
+    }
+
+    /**
+     * Search a new graph, any state from the previous graph is cleared and
+     * the arrays are reused where possible.
+     *
+     * @param n          number of vertices (at most 64)
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for a non-recursive search (may be null)
+     */
+    void search(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+
+        reset(n, offsets, neighbours);
+
+        if (stack != null)
+            stack.ensureCapacity(n);
 
         // check from all unvisited vertices
         for (int i = 0; i < n; i++) {
-            if (!visited(i)) check(i, 0, 0);
+            if (!visited(i)) {
+                if (stack != null)
+                    check(i, stack);
+                else
+                    check(i, 0, 0);
+            }
+        }
+
+        this.complete = true;
+
+        if (RingSearchMetrics.ENABLED) {
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.REGULAR);
+            RingSearchMetrics.dfs(n, backEdges);
+        }
+    }
+
+    /**
+     * Prepare to search a new graph lazily, the connected component of a
+     * vertex is only searched when the vertex (or a bond of it) is first
+     * queried. The queries are synchronized until every component has been
+     * searched, as with an eager search the tester is then safe to query
+     * from multiple threads.
+     *
+     * @param n          number of vertices (at most 64)
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     */
+    void searchLazily(int n, int[] offsets, int[] neighbours) {
+        reset(n, offsets, neighbours);
+        this.complete = n == 0;
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.tier(RingSearchMetrics.Tier.REGULAR);
+    }
+
+    private void reset(int n, int[] offsets, int[] neighbours) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.n = n;
+
+        if (state.length < n)
+            this.state = new long[n];
+        this.visited = 0;
+        this.cyclic = 0;
+        this.cyclicEdges = 0;
+        this.nSystems = 0;
+        this.backEdges = 0;
+    }
+
+    /**
+     * Search the component of vertex <i>i</i> if it has not been visited.
+     */
+    private void explore(int i) {
+        if (!visited(i)) {
+            long before = visited;
+            int backEdges = this.backEdges;
+            check(i, 0, 0);
+            if (RingSearchMetrics.ENABLED)
+                RingSearchMetrics.dfs(Long.bitCount(visited & ~before), this.backEdges - backEdges);
+            complete = visited == (n == 64 ? -1L : (1L << n) - 1);
         }
+    }
 
+    /**
+     * Search every component not yet visited.
+     */
+    private synchronized void exploreAll() {
+        for (int i = 0; i < n; i++)
+            explore(i);
     }
 
     private static boolean isBitSet(long value, int bit) {
@@ -47,15 +168,134 @@ class RegularBasicRingTester implements RingTester {
         throw new IllegalStateException("this ring tester does not store containers/atoms");
     }
 
+    @Override
+    public boolean isInRing(IBond bond) {
+        throw new IllegalStateException("this ring tester does not store containers/bonds");
+    }
+
     @Override
     public boolean isInRing(int i) {
-        if (!visited(i))
-            check(i, 0, 0);
+        if (!complete)
+            return isInRingLazily(i);
         return isBitSet(cyclic, i);
     }
 
-    public void registerCycle(long cycle){
+    private synchronized boolean isInRingLazily(int i) {
+        explore(i);
+        return isBitSet(cyclic, i);
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        if (!complete)
+            return isInRingLazily(u, v);
+        return isEdgeInRing(u, v);
+    }
+
+    private synchronized boolean isInRingLazily(int u, int v) {
+        // u and v are adjacent and so in the same component
+        explore(u);
+        return isEdgeInRing(u, v);
+    }
+
+    private boolean isEdgeInRing(int u, int v) {
+        if (!isBitSet(cyclic, u) || !isBitSet(cyclic, v))
+            return false;
+        // tree edges are only cyclic if they were in a cycle, back edges
+        // (to an ancestor) always are
+        if (state[v] == setBit(state[u], u))
+            return isBitSet(cyclicEdges, v);
+        if (state[u] == setBit(state[v], v))
+            return isBitSet(cyclicEdges, u);
+        return true;
+    }
+
+    /**
+     * Register a cycle found by a back edge to the vertex <i>j</i>.
+     *
+     * @param cycle vertices of the cycle
+     * @param j     the vertex that closes the cycle (first on the path)
+     */
+    public void registerCycle(long cycle, int j) {
+        backEdges++;
         this.cyclic |= cycle;
+        this.cyclicEdges |= cycle & ~(1L << j);
+
+        if (systems == null)
+            systems = new long[4];
+
+        // merge any systems the cycle shares atoms with
+        int k = 0;
+        for (int s = 0; s < nSystems; s++) {
+            if ((systems[s] & cycle) != 0)
+                cycle |= systems[s];
+            else
+                systems[k++] = systems[s];
+        }
+        if (k == systems.length)
+            systems = Arrays.copyOf(systems, 2 * k);
+        systems[k++] = cycle;
+        nSystems = k;
+    }
+
+    @Override
+    public int[] ringSystems() {
+        if (!complete)
+            exploreAll();
+        return RingSystems.label(systems, nSystems, n);
+    }
+
+    /**
+     * The ring systems as one mask per system.
+     *
+     * @return the ring system masks
+     */
+    public long[] ringSystemMasks() {
+        if (!complete)
+            exploreAll();
+        return nSystems == 0 ? new long[0] : Arrays.copyOf(systems, nSystems);
+    }
+
+    /**
+     * The ring atoms as a mask, bit <i>i</i> is set if vertex <i>i</i> is in
+     * a ring.
+     *
+     * @return the ring atom mask
+     */
+    long ringAtomMask() {
+        if (!complete)
+            exploreAll();
+        return cyclic;
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int backEdgeCount() {
+        if (!complete)
+            exploreAll();
+        return backEdges;
+    }
+
+    @Override
+    public int ringSystemCount() {
+        if (!complete)
+            exploreAll();
+        return nSystems;
+    }
+
+    @Override
+    public int ringAtomCount() {
+        return Long.bitCount(ringAtomMask());
+    }
+
+    @Override
+    public void ringAtomMask(long[] words) {
+        if (n > 0)
+            words[0] |= ringAtomMask();
     }
 
     public boolean visited(int i) {
@@ -73,10 +313,11 @@ class RegularBasicRingTester implements RingTester {
 
         visited |= path = setBit(state[i] = path, i);
 
-        for (int j : graph.get(i)) {
+        for (int k = offsets[i], end = offsets[i + 1]; k < end; k++) {
+            int j = neighbours[k];
             if (visited(j)) {
                 if (isBitSet(parentPath, j)) {
-                    registerCycle(state[j] ^ path);
+                    registerCycle(state[j] ^ path, j);
                 }
             } else {
                 check(j, state[i], path);
@@ -85,4 +326,47 @@ class RegularBasicRingTester implements RingTester {
 
     }
 
+    /**
+     * Do a complete non-recursive DFS from <i>vertex</i> root, the path to each
+     * vertex is stored in the state as for the recursive search.
+     *
+     * @param root  start vertex
+     * @param stack explicit stack (at least n capacity)
+     */
+    private void check(int root, DfsStack stack) {
+
+        final int[] vertices = stack.vertices;
+        final int[] next = stack.next;
+        int sp = 0;
+
+        visited |= setBit(state[root] = 0, root);
+        next[root] = offsets[root];
+        vertices[sp++] = root;
+
+        while (sp > 0) {
+
+            int i = vertices[sp - 1];
+
+            if (next[i] == offsets[i + 1]) {
+                sp--;
+                continue;
+            }
+
+            int  j          = neighbours[next[i]++];
+            long path       = setBit(state[i], i);
+            long parentPath = sp > 1 ? state[vertices[sp - 2]] : 0;
+
+            if (visited(j)) {
+                if (isBitSet(parentPath, j)) {
+                    registerCycle(state[j] ^ path, j);
+                }
+            } else {
+                visited |= setBit(state[j] = path, j);
+                next[j] = offsets[j];
+                vertices[sp++] = j;
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,401 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of ring perception results for libraries where the same
+ * structures (or scaffolds) occur many times. Results are keyed by a hash of
+ * the ordered adjacency (CSR) and a hit is verified against the stored
+ * adjacency, two structures share an entry only if their adjacency is
+ * identical. The least recently used entries are evicted when the cache
+ * holds more than a maximum number of entries or bytes.
+ *
+ * <blockquote><pre>
+ * RingCache cache = RingCache.withMaxBytes(64 * 1024 * 1024);
+ * while (reader.next()) {
+ *     RingTester tester = cache.perceive(reader.atomCount(),
+ *                                        reader.offsets(),
+ *                                        reader.neighbours());
+ * }
+ * System.out.println(cache);
+ * </pre></blockquote>
+ *
+ * A hit hashes and compares the adjacency, no search is done and nothing is
+ * copied. Containers are also looked up by identity, a hit on a container
+ * seen before is verified against a snapshot of its atoms and the atoms of
+ * each bond and the adjacency is not built. Adjacency and container entries
+ * share the limits and are evicted in the order they were last used, a
+ * container entry is charged for the tester it holds. The cache is thread-safe,
+ * misses are computed outside of the lock. The returned testers are
+ * immutable and do not reference the provided arrays.
+ *
+ * @author John May
+ */
+public final class RingCache {
+
+    private final int  maxEntries;
+    private final long maxBytes;
+    private final int  linearThreshold;
+
+    // adjacency (Key to CachedRingTester) and container (Identity to Snapshot)
+    // entries in access order
+    private final LinkedHashMap<Object, Object> entries;
+    private long bytes;
+
+    // statistics
+    private long hits, misses, evictions;
+
+    /**
+     * Create a cache bounded by both the number of entries and (approximate)
+     * bytes used.
+     *
+     * @param maxEntries maximum number of entries
+     * @param maxBytes   maximum number of bytes
+     */
+    public RingCache(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, BasicRingTester.DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    /**
+     * Create a cache bounded by both the number of entries and (approximate)
+     * bytes used.
+     *
+     * @param maxEntries      maximum number of entries
+     * @param maxBytes        maximum number of bytes
+     * @param linearThreshold size above which the linear tester is used
+     */
+    public RingCache(int maxEntries, long maxBytes, int linearThreshold) {
+        if (maxEntries < 0 || maxBytes < 0)
+            throw new IllegalArgumentException("the cache limits must not be negative");
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.linearThreshold = linearThreshold;
+        this.entries = new LinkedHashMap<Object, Object>(16, 0.75f, true);
+    }
+
+    /**
+     * Create a cache holding at most <i>maxEntries</i> results.
+     *
+     * @param maxEntries maximum number of entries
+     * @return the cache
+     */
+    public static RingCache withMaxEntries(int maxEntries) {
+        return new RingCache(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a cache using at most (approximately) <i>maxBytes</i>.
+     *
+     * @param maxBytes maximum number of bytes
+     * @return the cache
+     */
+    public static RingCache withMaxBytes(long maxBytes) {
+        return new RingCache(Integer.MAX_VALUE, maxBytes);
+    }
+
+    /**
+     * Perceive the rings of a container, using the cached result if the
+     * container was seen before (and is unchanged) or has the same adjacency
+     * as a previous one. The adjacency is only built if the container has
+     * not been seen.
+     *
+     * @param container structure
+     * @return ring tester for the structure
+     */
+    public BasicRingTester perceive(IAtomContainer container) {
+
+        Identity identity = new Identity(container);
+
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = (Snapshot) entries.get(identity);
+        }
+        if (snapshot != null && snapshot.matches(container)) {
+            synchronized (this) {
+                hits++;
+            }
+            return snapshot.tester;
+        }
+
+        // one index for the adjacency and the atom queries of the tester
+        AtomIndex index = new AtomIndex().index(container);
+        CsrGraph graph = BasicRingTester.createCsr(container, index);
+        CachedRingTester cached = lookup(graph.order(), graph.offsets(), graph.neighbours());
+        BasicRingTester tester = new BasicRingTester(cached, container, index);
+        snapshot = new Snapshot(container, tester, cached.bytes() + index.bytes());
+
+        put(identity, snapshot);
+
+        return tester;
+    }
+
+    /**
+     * Perceive the rings of a graph, using the cached result if the graph is
+     * the same as a previous one.
+     *
+     * @param graph the graph
+     * @return ring tester for the graph
+     */
+    public RingTester perceive(CsrGraph graph) {
+        return perceive(graph.order(), graph.offsets(), graph.neighbours());
+    }
+
+    /**
+     * Perceive the rings of a graph in CSR form, using the cached result if
+     * the graph is the same as a previous one. The arrays are copied on a
+     * miss and may be reused by the caller.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets (length >= n + 1)
+     * @param neighbours CSR neighbours
+     * @return ring tester for the graph
+     */
+    public RingTester perceive(int n, int[] offsets, int[] neighbours) {
+        return lookup(n, offsets, neighbours);
+    }
+
+    private CachedRingTester lookup(int n, int[] offsets, int[] neighbours) {
+
+        Key probe = new Key(n, offsets, neighbours);
+
+        synchronized (this) {
+            CachedRingTester cached = (CachedRingTester) entries.get(probe);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // copy the adjacency so the key and result do not change
+        int[] offsetsCopy = Arrays.copyOf(offsets, n + 1);
+        int[] neighboursCopy = Arrays.copyOf(neighbours, offsets[n]);
+        CsrGraph graph = new CsrGraph(n, offsetsCopy, neighboursCopy);
+        CachedRingTester tester = new CachedRingTester(n, offsetsCopy, neighboursCopy,
+                                                       BasicRingTester.ringTester(graph, linearThreshold));
+
+        put(new Key(n, offsetsCopy, neighboursCopy, probe.hash), tester);
+
+        return tester;
+    }
+
+    /**
+     * Store an entry and evict to stay within the limits.
+     */
+    private synchronized void put(Object key, Object value) {
+        Object previous = entries.put(key, value);
+        if (previous != null)
+            bytes -= bytes(previous);
+        bytes += bytes(value);
+        evict();
+    }
+
+    /**
+     * Remove the least recently used entries (of either kind) until the
+     * cache is within its limits.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Object, Object>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= bytes(it.next().getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long bytes(Object value) {
+        return value instanceof Snapshot ? ((Snapshot) value).bytes()
+                                         : ((CachedRingTester) value).bytes();
+    }
+
+    /**
+     * Remove all entries, the statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return number of entries (adjacencies and containers)
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return approximate memory used by the entries
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of lookups which found a result
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups which computed a result
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return number of entries evicted to stay within the limits
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("RingCache{entries=%d, bytes=%d, hits=%d, misses=%d, evictions=%d, hit rate=%.1f%%}",
+                             entries.size(), bytes, hits, misses, evictions,
+                             lookups == 0 ? 0 : 100.0 * hits / lookups);
+    }
+
+    /**
+     * A container compared by identity.
+     */
+    private static final class Identity {
+
+        private final IAtomContainer container;
+
+        Identity(IAtomContainer container) {
+            this.container = container;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(container);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity && ((Identity) o).container == container;
+        }
+    }
+
+    /**
+     * The atoms of a container followed by the two atoms of each bond, and
+     * the tester for the container. If the container still has the same
+     * atoms and bonds between the same atoms it has the same adjacency.
+     */
+    private static final class Snapshot {
+
+        private final Object[]        ends;
+        private final int             nAtoms;
+        private final BasicRingTester tester;
+        private final long            testerBytes;
+
+        Snapshot(IAtomContainer container, BasicRingTester tester, long testerBytes) {
+            int n = container.getAtomCount(), m = container.getBondCount();
+            this.ends = new Object[n + 2 * m];
+            this.nAtoms = n;
+            this.tester = tester;
+            this.testerBytes = testerBytes;
+            for (int i = 0; i < n; i++)
+                ends[i] = container.getAtom(i);
+            for (int j = 0, k = n; j < m; j++) {
+                IBond bond = container.getBond(j);
+                ends[k++] = bond.getAtom(0);
+                ends[k++] = bond.getAtom(1);
+            }
+        }
+
+        /**
+         * The container has the same atoms and bonds as when the snapshot
+         * was taken, only references are compared.
+         */
+        boolean matches(IAtomContainer container) {
+            if (container.getAtomCount() != nAtoms
+                    || 2 * container.getBondCount() != ends.length - nAtoms)
+                return false;
+            for (int i = 0; i < nAtoms; i++) {
+                if (container.getAtom(i) != ends[i])
+                    return false;
+            }
+            for (int j = 0, k = nAtoms; k < ends.length; j++) {
+                IBond bond = container.getBond(j);
+                if (bond.getAtom(0) != ends[k++] || bond.getAtom(1) != ends[k++])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return size in bytes, including the tester which is kept even if
+         *         its adjacency entry is evicted
+         */
+        long bytes() {
+            // 16 bytes for the array header, 8 per reference
+            return 16 + 8L * ends.length + testerBytes;
+        }
+    }
+
+    /**
+     * The adjacency of a graph, equal keys have identical adjacency (only the
+     * first n + 1 offsets and the neighbours they index are compared).
+     */
+    private static final class Key {
+
+        private final int   n;
+        private final int[] offsets, neighbours;
+        private final int   hash;
+
+        Key(int n, int[] offsets, int[] neighbours) {
+            this(n, offsets, neighbours, hash(n, offsets, neighbours));
+        }
+
+        Key(int n, int[] offsets, int[] neighbours, int hash) {
+            this.n = n;
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+            this.hash = hash;
+        }
+
+        private static int hash(int n, int[] offsets, int[] neighbours) {
+            int h = n;
+            for (int i = 1; i <= n; i++)
+                h = 31 * h + offsets[i];
+            for (int k = offsets[0], end = offsets[n]; k < end; k++)
+                h = 31 * h + neighbours[k];
+            return h ^ (h >>> 16);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key that = (Key) o;
+            if (this.hash != that.hash || this.n != that.n)
+                return false;
+            for (int i = 0; i <= n; i++) {
+                if (this.offsets[i] != that.offsets[i])
+                    return false;
+            }
+            for (int k = offsets[0], end = offsets[n]; k < end; k++) {
+                if (this.neighbours[k] != that.neighbours[k])
+                    return false;
+            }
+            return true;
+        }
+    }
+
+}
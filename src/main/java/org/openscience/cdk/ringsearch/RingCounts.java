@@ -0,0 +1,41 @@
+package org.openscience.cdk.ringsearch;
+
+/**
+ * Counts a tester keeps as it searches, a summary of the rings can then be
+ * given without querying each atom. The number of back edges found by a
+ * depth-first search is |E| - |V| + components, the circuit rank (number of
+ * independent rings) of the graph.
+ *
+ * @author John May
+ */
+interface RingCounts {
+
+    /**
+     * @return number of vertices in the graph
+     */
+    int order();
+
+    /**
+     * @return number of back edges (the circuit rank)
+     */
+    int backEdgeCount();
+
+    /**
+     * @return number of ring systems
+     */
+    int ringSystemCount();
+
+    /**
+     * @return number of vertices in a ring
+     */
+    int ringAtomCount();
+
+    /**
+     * Set the bits of the ring atoms, bit <i>i</i> % 64 of word <i>i</i> / 64
+     * for ring atom <i>i</i>. Other bits are not modified.
+     *
+     * @param words the mask (at least <i>order</i> bits)
+     */
+    void ringAtomMask(long[] words);
+
+}
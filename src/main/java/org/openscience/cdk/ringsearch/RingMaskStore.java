@@ -0,0 +1,147 @@
+package org.openscience.cdk.ringsearch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Random access to the ring atoms and bonds stored by a
+ * {@link RingMaskWriter}. The file is memory-mapped and every query reads
+ * the mapping directly, nothing is copied to the heap and finding a record
+ * is O(1) through the offset index. Records are numbered in the order they
+ * were written.
+ *
+ * <blockquote><pre>
+ * RingMaskStore store = RingMaskStore.open(new File("library.rings"));
+ * if (store.isInRing(record, atom)) {
+ *     ...
+ * }
+ * store.close();
+ * </pre></blockquote>
+ *
+ * A store is safe to query from multiple threads. Files larger than 2 GB
+ * are not supported.
+ *
+ * @author John May
+ */
+public final class RingMaskStore implements Closeable {
+
+    private final IndexedFile      file;
+    private final MappedByteBuffer buffer;
+
+    private RingMaskStore(IndexedFile file) {
+        this.file = file;
+        this.buffer = file.buffer();
+    }
+
+    /**
+     * Open (memory-map) a store.
+     *
+     * @param file the store
+     * @return the store
+     * @throws IOException the file could not be mapped or was not a store
+     */
+    public static RingMaskStore open(File file) throws IOException {
+        return new RingMaskStore(IndexedFile.open(file, RingMaskWriter.MAGIC, RingMaskWriter.VERSION,
+                                                  "ring mask store"));
+    }
+
+    /**
+     * @return number of records
+     */
+    public int size() {
+        return file.size();
+    }
+
+    /**
+     * @param record record number
+     * @return number of atoms in the record
+     */
+    public int atomCount(int record) {
+        return buffer.getInt(offset(record));
+    }
+
+    /**
+     * @param record record number
+     * @return number of bonds in the record
+     */
+    public int bondCount(int record) {
+        return buffer.getInt(offset(record) + 4);
+    }
+
+    /**
+     * Is atom <i>atom</i> of a record in a ring.
+     *
+     * @param record record number
+     * @param atom   atom index
+     * @return the atom is in a ring
+     */
+    public boolean isInRing(int record, int atom) {
+        int offset = offset(record);
+        int n = buffer.getInt(offset);
+        if (atom < 0 || atom >= n)
+            throw new IndexOutOfBoundsException("atom " + atom + " of " + n);
+        return (buffer.getLong(offset + 8 + 8 * (atom >> 6)) & (1L << atom)) != 0;
+    }
+
+    /**
+     * Is bond <i>bond</i> of a record in a ring.
+     *
+     * @param record record number
+     * @param bond   bond index
+     * @return the bond is in a ring
+     */
+    public boolean isBondInRing(int record, int bond) {
+        int offset = offset(record);
+        int n = buffer.getInt(offset);
+        int m = buffer.getInt(offset + 4);
+        if (bond < 0 || bond >= m)
+            throw new IndexOutOfBoundsException("bond " + bond + " of " + m);
+        return (buffer.getLong(offset + 8 + 8 * (((n + 63) >> 6) + (bond >> 6))) & (1L << bond)) != 0;
+    }
+
+    /**
+     * @param record record number
+     * @return number of ring atoms in the record
+     */
+    public int ringAtomCount(int record) {
+        int offset = offset(record);
+        int words = (buffer.getInt(offset) + 63) >> 6;
+        return bitCount(offset + 8, words);
+    }
+
+    /**
+     * @param record record number
+     * @return number of ring bonds in the record
+     */
+    public int ringBondCount(int record) {
+        int offset = offset(record);
+        int atomWords = (buffer.getInt(offset) + 63) >> 6;
+        int bondWords = (buffer.getInt(offset + 4) + 63) >> 6;
+        return bitCount(offset + 8 + 8 * atomWords, bondWords);
+    }
+
+    private int bitCount(int offset, int words) {
+        int count = 0;
+        for (int k = 0; k < words; k++)
+            count += Long.bitCount(buffer.getLong(offset + 8 * k));
+        return count;
+    }
+
+    private int offset(int record) {
+        return file.offset(record);
+    }
+
+    /**
+     * Close the file, the mapping is released when the store is garbage
+     * collected and must not be queried after closing.
+     *
+     * @throws IOException the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes the ring atoms and ring bonds of a sequence of molecules to a
+ * compact binary file which is read with a {@link RingMaskStore}. Each record
+ * is the atom and bond counts followed by a bit mask of the ring atoms and
+ * of the ring bonds (in bond order), one bit each, padded to 64-bit words.
+ * An index of the record offsets is written when the writer is closed.
+ *
+ * <blockquote><pre>
+ * RingMaskWriter writer = new RingMaskWriter(new File("library.rings"));
+ * for (IAtomContainer container : containers)
+ *     writer.write(container, workspace.perceive(container));
+ * writer.close();
+ * </pre></blockquote>
+ *
+ * The layout (big-endian) is:
+ * <ul>
+ * <li>header: magic (int), version (int), record count (long), index
+ * offset (long)</li>
+ * <li>records: atom count (int), bond count (int), atom mask
+ * (long[(atoms + 63) / 64]), bond mask (long[(bonds + 63) / 64])</li>
+ * <li>index: the offset of each record (long[count])</li>
+ * </ul>
+ *
+ * @author John May
+ */
+public final class RingMaskWriter implements Closeable {
+
+    static final int MAGIC   = 0x524d534b; // 'RMSK'
+    static final int VERSION = 1;
+
+    private final IndexedFile.Writer file;
+
+    // the masks of the current record
+    private long[] atoms = new long[1];
+    private long[] bonds = new long[1];
+
+    public RingMaskWriter(File file) throws IOException {
+        this.file = new IndexedFile.Writer(file, MAGIC, VERSION);
+    }
+
+    /**
+     * Write the ring atoms and bonds of a container, the bonds are in the
+     * order of the container.
+     *
+     * @param container structure
+     * @param tester    ring tester of the structure
+     * @throws IOException the record could not be written
+     */
+    public void write(IAtomContainer container, RingTester tester) throws IOException {
+        int n = container.getAtomCount();
+        int m = container.getBondCount();
+        clear(n, m);
+        for (int i = 0; i < n; i++) {
+            if (tester.isInRing(i))
+                atoms[i >> 6] |= 1L << i;
+        }
+        int j = 0;
+        for (IBond bond : container.bonds()) {
+            if (tester.isInRing(bond))
+                bonds[j >> 6] |= 1L << j;
+            j++;
+        }
+        record(n, m);
+    }
+
+    /**
+     * Write the ring atoms and bonds of a graph, the bonds are given as
+     * consecutive pairs of atoms (e.g. {@link MolfileGraphReader#edges()}).
+     *
+     * @param tester ring tester of the graph
+     * @param n      number of atoms
+     * @param edges  the atoms of each bond
+     * @param m      number of bonds
+     * @throws IOException the record could not be written
+     */
+    public void write(RingTester tester, int n, int[] edges, int m) throws IOException {
+        clear(n, m);
+        for (int i = 0; i < n; i++) {
+            if (tester.isInRing(i))
+                atoms[i >> 6] |= 1L << i;
+        }
+        for (int j = 0; j < m; j++) {
+            if (tester.isInRing(edges[2 * j], edges[2 * j + 1]))
+                bonds[j >> 6] |= 1L << j;
+        }
+        record(n, m);
+    }
+
+    /**
+     * @return number of records written
+     */
+    public int count() {
+        return file.count();
+    }
+
+    private void clear(int n, int m) {
+        int atomWords = (n + 63) >> 6, bondWords = (m + 63) >> 6;
+        if (atoms.length < atomWords)
+            atoms = new long[Math.max(atomWords, 2 * atoms.length)];
+        if (bonds.length < bondWords)
+            bonds = new long[Math.max(bondWords, 2 * bonds.length)];
+        Arrays.fill(atoms, 0, atomWords, 0);
+        Arrays.fill(bonds, 0, bondWords, 0);
+    }
+
+    private void record(int n, int m) throws IOException {
+        int atomWords = (n + 63) >> 6, bondWords = (m + 63) >> 6;
+        DataOutputStream out = file.record(8 + 8L * (atomWords + bondWords));
+        out.writeInt(n);
+        out.writeInt(m);
+        for (int k = 0; k < atomWords; k++)
+            out.writeLong(atoms[k]);
+        for (int k = 0; k < bondWords; k++)
+            out.writeLong(bonds[k]);
+    }
+
+    /**
+     * Write the index and complete the header.
+     *
+     * @throws IOException the file could not be completed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
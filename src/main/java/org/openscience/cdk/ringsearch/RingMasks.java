@@ -0,0 +1,95 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.Arrays;
+
+/**
+ * The ring atoms of a collection of molecules, stored compactly as one bit
+ * per atom in a single array. Each molecule's mask starts on a new 64-bit
+ * word, the molecules are indexed in the order they were provided.
+ *
+ * @author John May
+ */
+public final class RingMasks {
+
+    private final int[]  atomCounts;
+    private final int[]  offsets;
+    private final long[] words;
+
+    /**
+     * Allocate (empty) masks for molecules with the given atom counts.
+     *
+     * @param atomCounts number of atoms in each molecule
+     */
+    RingMasks(int[] atomCounts) {
+        this.atomCounts = atomCounts;
+        this.offsets = new int[atomCounts.length + 1];
+        for (int i = 0; i < atomCounts.length; i++)
+            offsets[i + 1] = offsets[i] + ((atomCounts[i] + 63) >> 6);
+        this.words = new long[offsets[atomCounts.length]];
+    }
+
+    /**
+     * Store the ring atoms of the molecule at <i>index</i> from a tester.
+     *
+     * @param index  molecule index
+     * @param tester ring tester for the molecule
+     */
+    void set(int index, RingTester tester) {
+        int offset = offsets[index];
+        for (int i = 0; i < atomCounts[index]; i++) {
+            if (tester.isInRing(i))
+                words[offset + (i >> 6)] |= 1L << i;
+        }
+    }
+
+    /**
+     * @return number of molecules
+     */
+    public int size() {
+        return atomCounts.length;
+    }
+
+    /**
+     * @param index molecule index
+     * @return number of atoms in the molecule
+     */
+    public int atomCount(int index) {
+        return atomCounts[index];
+    }
+
+    /**
+     * Is the atom <i>atom</i> of the molecule at <i>index</i> in a ring.
+     *
+     * @param index molecule index
+     * @param atom  atom index
+     * @return the atom is in a ring
+     */
+    public boolean isInRing(int index, int atom) {
+        if (atom < 0 || atom >= atomCounts[index])
+            throw new IndexOutOfBoundsException("atom " + atom + " of " + atomCounts[index]);
+        return (words[offsets[index] + (atom >> 6)] & (1L << atom)) != 0;
+    }
+
+    /**
+     * @param index molecule index
+     * @return number of ring atoms in the molecule
+     */
+    public int ringAtomCount(int index) {
+        int count = 0;
+        for (int k = offsets[index]; k < offsets[index + 1]; k++)
+            count += Long.bitCount(words[k]);
+        return count;
+    }
+
+    /**
+     * The ring atoms of the molecule at <i>index</i> as a copy of its mask,
+     * bit <i>i</i> of word <i>i</i> / 64 is set if atom <i>i</i> is in a ring.
+     *
+     * @param index molecule index
+     * @return the ring atom mask
+     */
+    public long[] mask(int index) {
+        return Arrays.copyOfRange(words, offsets[index], offsets[index + 1]);
+    }
+
+}
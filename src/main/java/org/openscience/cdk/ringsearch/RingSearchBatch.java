@@ -0,0 +1,134 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Perceive the rings of a collection of molecules in parallel. The molecules
+ * are split into chunks which are processed on an executor, each thread uses
+ * its own {@link RingSearchWorkspace} and writes to a separate region of the
+ * result - the threads share nothing else. The ring masks are returned in the
+ * order of the input.
+ *
+ * <blockquote><pre>
+ * RingMasks masks = new RingSearchBatch().perceive(containers);
+ * for (int i = 0; i &lt; masks.size(); i++) {
+ *     int count = masks.ringAtomCount(i);
+ * }
+ * </pre></blockquote>
+ *
+ * @author John May
+ */
+public final class RingSearchBatch {
+
+    /** Default number of molecules processed by a task. */
+    public static final int DEFAULT_CHUNK_SIZE = 512;
+
+    private static ForkJoinPool defaultPool;
+
+    private final ExecutorService executor;
+    private final int             chunkSize;
+
+    /**
+     * Perceive rings on a shared fork-join pool with one thread per processor.
+     */
+    public RingSearchBatch() {
+        this(defaultPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Perceive rings on the provided executor, the executor is not shut down
+     * by the batch.
+     *
+     * @param executor the executor to run on
+     */
+    public RingSearchBatch(ExecutorService executor) {
+        this(executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Perceive rings on the provided executor with tasks of <i>chunkSize</i>
+     * molecules.
+     *
+     * @param executor  the executor to run on
+     * @param chunkSize number of molecules processed by a task
+     */
+    public RingSearchBatch(ExecutorService executor, int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunk size must be positive");
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+
+    private static synchronized ForkJoinPool defaultPool() {
+        if (defaultPool == null)
+            defaultPool = new ForkJoinPool();
+        return defaultPool;
+    }
+
+    /**
+     * Perceive the rings of the molecules, the iterable is read into a list
+     * first.
+     *
+     * @param containers the molecules
+     * @return ring masks in input order
+     */
+    public RingMasks perceive(Iterable<IAtomContainer> containers) {
+        List<IAtomContainer> list = new ArrayList<IAtomContainer>();
+        for (IAtomContainer container : containers)
+            list.add(container);
+        return perceive(list);
+    }
+
+    /**
+     * Perceive the rings of the molecules.
+     *
+     * @param containers the molecules
+     * @return ring masks in input order
+     */
+    public RingMasks perceive(final List<IAtomContainer> containers) {
+
+        int[] atomCounts = new int[containers.size()];
+        for (int i = 0; i < atomCounts.length; i++)
+            atomCounts[i] = containers.get(i).getAtomCount();
+
+        final RingMasks masks = new RingMasks(atomCounts);
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < atomCounts.length; i += chunkSize) {
+            final int begin = i;
+            final int end = Math.min(atomCounts.length, i + chunkSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    RingSearchWorkspace workspace = RingSearchWorkspace.forCurrentThread();
+                    for (int j = begin; j < end; j++)
+                        masks.set(j, workspace.perceive(containers.get(j)));
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ring perception was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("ring perception failed", e.getCause());
+        }
+
+        return masks;
+    }
+
+}
@@ -0,0 +1,241 @@
+package org.openscience.cdk.ringsearch;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of the ring searches. Metrics are enabled
+ * with the system property <code>cdk.ringsearch.metrics</code> and are then
+ * also registered with the platform MBean server (see
+ * {@link RingSearchMetricsMXBean}). When disabled, every call site is
+ * guarded by the constant {@link #ENABLED} flag and is removed by the JIT
+ * compiler, the metrics cost nothing.
+ *
+ * <ul>
+ * <li>searches and the tier selected for each (components of a graph are
+ * counted separately)</li>
+ * <li>vertices visited and back edges found by the depth-first searches</li>
+ * <li>the number and time of adjacency builds from containers</li>
+ * <li>histograms of the search and adjacency build latencies</li>
+ * </ul>
+ *
+ * @author John May
+ */
+public final class RingSearchMetrics implements RingSearchMetricsMXBean {
+
+    /** Are metrics recorded. */
+    public static final boolean ENABLED = Boolean.getBoolean("cdk.ringsearch.metrics");
+
+    /** The tiers of ring tester. */
+    enum Tier {
+        REGULAR, MULTI_WORD, JUMBO, LINEAR
+    }
+
+    private static final RingSearchMetrics INSTANCE = new RingSearchMetrics();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                                 .registerMBean(INSTANCE, new ObjectName("org.openscience.cdk.ringsearch:type=RingSearchMetrics"));
+            } catch (JMException e) {
+                // already registered (e.g. by another class loader), the
+                // metrics are still available from get()
+            }
+        }
+    }
+
+    private final AtomicLong      vertices        = new AtomicLong();
+    private final AtomicLong      backEdges       = new AtomicLong();
+    private final AtomicLongArray tiers           = new AtomicLongArray(Tier.values().length);
+    private final AtomicLong      adjacencyBuilds = new AtomicLong();
+    private final AtomicLong      adjacencyNanos  = new AtomicLong();
+
+    private final LatencyHistogram searchLatency    = new LatencyHistogram();
+    private final LatencyHistogram adjacencyLatency = new LatencyHistogram();
+
+    private RingSearchMetrics() {
+    }
+
+    /**
+     * Access the metrics.
+     *
+     * @return the metrics
+     */
+    public static RingSearchMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the selection of a tier for a search.
+     */
+    static void tier(Tier tier) {
+        INSTANCE.tiers.incrementAndGet(tier.ordinal());
+    }
+
+    /**
+     * Record part (or all) of a depth-first search.
+     */
+    static void dfs(int vertices, int backEdges) {
+        INSTANCE.vertices.addAndGet(vertices);
+        INSTANCE.backEdges.addAndGet(backEdges);
+    }
+
+    /**
+     * Record the time to search (and select the tier of) one graph.
+     */
+    static void search(long nanos) {
+        INSTANCE.searchLatency.record(nanos);
+    }
+
+    /**
+     * Record the time to build the adjacency of one container.
+     */
+    static void adjacency(long nanos) {
+        INSTANCE.adjacencyBuilds.incrementAndGet();
+        INSTANCE.adjacencyNanos.addAndGet(nanos);
+        INSTANCE.adjacencyLatency.record(nanos);
+    }
+
+    /**
+     * @return histogram of the search latency (nanoseconds)
+     */
+    public LatencyHistogram searchLatency() {
+        return searchLatency;
+    }
+
+    /**
+     * @return histogram of the adjacency build latency (nanoseconds)
+     */
+    public LatencyHistogram adjacencyLatency() {
+        return adjacencyLatency;
+    }
+
+    @Override
+    public long getSearches() {
+        return searchLatency.count();
+    }
+
+    @Override
+    public long getVerticesVisited() {
+        return vertices.get();
+    }
+
+    @Override
+    public long getBackEdges() {
+        return backEdges.get();
+    }
+
+    @Override
+    public long getRegularSelections() {
+        return tiers.get(Tier.REGULAR.ordinal());
+    }
+
+    @Override
+    public long getMultiWordSelections() {
+        return tiers.get(Tier.MULTI_WORD.ordinal());
+    }
+
+    @Override
+    public long getJumboSelections() {
+        return tiers.get(Tier.JUMBO.ordinal());
+    }
+
+    @Override
+    public long getLinearSelections() {
+        return tiers.get(Tier.LINEAR.ordinal());
+    }
+
+    @Override
+    public long getAdjacencyBuilds() {
+        return adjacencyBuilds.get();
+    }
+
+    @Override
+    public long getAdjacencyBuildNanos() {
+        return adjacencyNanos.get();
+    }
+
+    @Override
+    public double getSearchLatencyMean() {
+        return searchLatency.mean() / 1e3;
+    }
+
+    @Override
+    public long getSearchLatencyP50() {
+        return searchLatency.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getSearchLatencyP90() {
+        return searchLatency.percentile(90) / 1000;
+    }
+
+    @Override
+    public long getSearchLatencyP99() {
+        return searchLatency.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getSearchLatencyP999() {
+        return searchLatency.percentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getSearchLatencyMax() {
+        return searchLatency.max() / 1000;
+    }
+
+    @Override
+    public double getAdjacencyLatencyMean() {
+        return adjacencyLatency.mean() / 1e3;
+    }
+
+    @Override
+    public long getAdjacencyLatencyP99() {
+        return adjacencyLatency.percentile(99) / 1000;
+    }
+
+    @Override
+    public void reset() {
+        vertices.set(0);
+        backEdges.set(0);
+        for (int i = 0; i < tiers.length(); i++)
+            tiers.set(i, 0);
+        adjacencyBuilds.set(0);
+        adjacencyNanos.set(0);
+        searchLatency.reset();
+        adjacencyLatency.reset();
+    }
+
+    /**
+     * A multi-line summary of the metrics, latencies in microseconds.
+     *
+     * @return the summary
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("searches: %d (regular %d, multi-word %d, jumbo %d, linear %d)%n",
+                                getSearches(), getRegularSelections(), getMultiWordSelections(),
+                                getJumboSelections(), getLinearSelections()));
+        sb.append(String.format("vertices visited: %d, back edges: %d%n", getVerticesVisited(), getBackEdges()));
+        sb.append(String.format("adjacency builds: %d in %.2f ms%n", getAdjacencyBuilds(), getAdjacencyBuildNanos() / 1e6));
+        sb.append(String.format("search latency (us): mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                                searchLatency.mean() / 1e3,
+                                searchLatency.percentile(50) / 1e3,
+                                searchLatency.percentile(90) / 1e3,
+                                searchLatency.percentile(99) / 1e3,
+                                searchLatency.percentile(99.9) / 1e3,
+                                searchLatency.max() / 1e3));
+        sb.append(String.format("adjacency latency (us): mean %.2f, p50 %.2f, p99 %.2f, max %.2f",
+                                adjacencyLatency.mean() / 1e3,
+                                adjacencyLatency.percentile(50) / 1e3,
+                                adjacencyLatency.percentile(99) / 1e3,
+                                adjacencyLatency.max() / 1e3));
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.openscience.cdk.ringsearch;
+
+/**
+ * Management interface of the {@link RingSearchMetrics}, registered as
+ * <code>org.openscience.cdk.ringsearch:type=RingSearchMetrics</code>. Times
+ * are in microseconds unless stated.
+ *
+ * @author John May
+ */
+public interface RingSearchMetricsMXBean {
+
+    long getSearches();
+
+    long getVerticesVisited();
+
+    long getBackEdges();
+
+    long getRegularSelections();
+
+    long getMultiWordSelections();
+
+    long getJumboSelections();
+
+    long getLinearSelections();
+
+    long getAdjacencyBuilds();
+
+    long getAdjacencyBuildNanos();
+
+    double getSearchLatencyMean();
+
+    long getSearchLatencyP50();
+
+    long getSearchLatencyP90();
+
+    long getSearchLatencyP99();
+
+    long getSearchLatencyP999();
+
+    long getSearchLatencyMax();
+
+    double getAdjacencyLatencyMean();
+
+    long getAdjacencyLatencyP99();
+
+    void reset();
+
+}
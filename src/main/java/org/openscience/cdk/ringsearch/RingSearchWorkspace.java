@@ -0,0 +1,350 @@
+package org.openscience.cdk.ringsearch;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Arrays;
+
+/**
+ * A reusable workspace for ring perception over many molecules. The
+ * adjacency, search state and stack are kept between molecules and only grow
+ * when a larger molecule is seen - after warm-up perceiving the rings of a
+ * molecule does not allocate. The workspace answers queries about the last
+ * molecule perceived, the results are overwritten by the next call to
+ * <code>perceive</code>.
+ *
+ * <blockquote><pre>
+ * RingSearchWorkspace workspace = new RingSearchWorkspace();
+ * for (IAtomContainer container : containers) {
+ *     RingTester tester = workspace.perceive(container);
+ *     ...
+ * }
+ * </pre></blockquote>
+ *
+ * A workspace is not thread-safe, each thread should use its own (see
+ * {@link #forCurrentThread()}).
+ *
+ * @author John May
+ */
+public final class RingSearchWorkspace implements RingTester {
+
+    private static final ThreadLocal<RingSearchWorkspace> LOCAL = new ThreadLocal<RingSearchWorkspace>() {
+        @Override
+        protected RingSearchWorkspace initialValue() {
+            return new RingSearchWorkspace();
+        }
+    };
+
+    private final boolean prune;
+
+    // adjacency of the current molecule
+    private int[] offsets    = new int[65];
+    private int[] neighbours = new int[128];
+    private int[] edges      = new int[128];
+
+    private final DfsStack  stack = new DfsStack();
+    private final AtomIndex index = new AtomIndex();
+
+    // testers are created on first use and reused
+    private final TierSelector        selector;
+    private final ComponentRingTester components;
+
+    // the 2-core when pruning
+    private final TwoCore          core   = new TwoCore();
+    private final PrunedRingTester pruned = new PrunedRingTester(core, null);
+
+    private RingTester     tester;
+    private IAtomContainer container;
+
+    // the graph last searched, for the ring size queries
+    private int   n;
+    private int[] graphOffsets, graphNeighbours;
+
+    // prepared on the first ring size query of each graph
+    private final SmallestRings smallest = new SmallestRings();
+    private boolean             smallestPrepared;
+
+    // the ring atom mask of a structure of at most 64 atoms
+    private final long[] word = new long[1];
+
+    public RingSearchWorkspace() {
+        this(BasicRingTester.DEFAULT_LINEAR_THRESHOLD);
+    }
+
+    public RingSearchWorkspace(int linearThreshold) {
+        this(linearThreshold, BasicRingTester.DEFAULT_PRUNE);
+    }
+
+    /**
+     * Create a workspace, if <i>prune</i> is set only the 2-core of each
+     * graph is searched.
+     *
+     * @param linearThreshold size above which the linear tester is used
+     * @param prune           remove vertices of degree 0 or 1 before searching
+     */
+    public RingSearchWorkspace(int linearThreshold, boolean prune) {
+        this.prune = prune;
+        this.selector = new TierSelector(linearThreshold);
+        this.components = new ComponentRingTester(linearThreshold);
+    }
+
+    /**
+     * Access the workspace confined to the current thread.
+     *
+     * @return the thread's workspace
+     */
+    public static RingSearchWorkspace forCurrentThread() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Perceive the rings of a container, the returned tester (this workspace)
+     * is valid until the next molecule is perceived.
+     *
+     * @param container structure
+     * @return ring tester for the structure
+     */
+    public RingTester perceive(IAtomContainer container) {
+
+        long start = RingSearchMetrics.ENABLED ? System.nanoTime() : 0;
+
+        int n = container.getAtomCount();
+        int m = container.getBondCount();
+
+        if (offsets.length < n + 1)
+            offsets = new int[Math.max(n + 1, 2 * offsets.length)];
+        if (edges.length < 2 * m) {
+            edges = new int[Math.max(2 * m, 2 * edges.length)];
+            neighbours = new int[edges.length];
+        }
+
+        index.index(container);
+
+        // ct table only (i.e. multi-bonds will break this)
+        int k = 0;
+        for (IBond bond : container.bonds()) {
+            edges[k++] = index.get(bond.getAtom(0));
+            edges[k++] = index.get(bond.getAtom(1));
+        }
+
+        CsrGraph.fill(n, edges, k, offsets, neighbours);
+
+        if (RingSearchMetrics.ENABLED)
+            RingSearchMetrics.adjacency(System.nanoTime() - start);
+
+        search(n, offsets, neighbours);
+        this.container = container;
+        return this;
+    }
+
+    /**
+     * Perceive the rings of a graph, the returned tester (this workspace) is
+     * valid until the next graph is perceived.
+     *
+     * @param graph the graph
+     * @return ring tester for the graph
+     */
+    public RingTester perceive(CsrGraph graph) {
+        return perceive(graph.order(), graph.offsets(), graph.neighbours());
+    }
+
+    /**
+     * Perceive the rings of a graph in CSR form, the arrays are not copied
+     * and must not be modified while the results are in use.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @return ring tester for the graph
+     */
+    public RingTester perceive(int n, int[] offsets, int[] neighbours) {
+        search(n, offsets, neighbours);
+        this.container = null;
+        index.clear();
+        return this;
+    }
+
+    private void search(int n, int[] offsets, int[] neighbours) {
+        this.n = n;
+        this.graphOffsets = offsets;
+        this.graphNeighbours = neighbours;
+        this.smallestPrepared = false;
+        if (!RingSearchMetrics.ENABLED) {
+            searchGraph(n, offsets, neighbours);
+            return;
+        }
+        long start = System.nanoTime();
+        searchGraph(n, offsets, neighbours);
+        RingSearchMetrics.search(System.nanoTime() - start);
+    }
+
+    /**
+     * Search the graph, or its 2-core if pruning.
+     */
+    private void searchGraph(int n, int[] offsets, int[] neighbours) {
+        if (prune) {
+            core.prune(n, offsets, neighbours);
+            if (!core.isWholeGraph()) {
+                if (core.order() == 0) {
+                    pruned.set(null);
+                } else {
+                    select(core.order(), core.offsets(), core.neighbours());
+                    pruned.set(tester);
+                }
+                tester = pruned;
+                return;
+            }
+        }
+        select(n, offsets, neighbours);
+    }
+
+    /**
+     * Search the graph with the narrowest tier that fits, larger graphs are
+     * split into their connected components.
+     */
+    private void select(int n, int[] offsets, int[] neighbours) {
+        if (n <= 64)
+            tester = selector.search(n, offsets, neighbours, stack);
+        else
+            tester = components.search(n, offsets, neighbours, stack);
+    }
+
+    @Override
+    public boolean isInRing(int i) {
+        return tester.isInRing(i);
+    }
+
+    @Override
+    public boolean isInRing(IAtom atom) {
+        if (container == null)
+            throw new IllegalStateException("the last graph perceived was not a container");
+        return tester.isInRing(index.get(atom));
+    }
+
+    @Override
+    public boolean isInRing(int u, int v) {
+        return tester.isInRing(u, v);
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        if (container == null)
+            throw new IllegalStateException("the last graph perceived was not a container");
+        return tester.isInRing(index.get(bond.getAtom(0)),
+                               index.get(bond.getAtom(1)));
+    }
+
+    @Override
+    public int[] ringSystems() {
+        return tester.ringSystems();
+    }
+
+    /**
+     * Counts of the rings of the last structure perceived (circuit rank,
+     * ring systems and ring atoms), kept during the search so no atoms are
+     * queried.
+     *
+     * @return the ring summary
+     */
+    public RingSummary summary() {
+        return RingSummary.of((RingCounts) tester);
+    }
+
+    /**
+     * The ring atoms of the last structure perceived as a single mask, bit
+     * <i>i</i> is set if atom <i>i</i> is in a ring. Only available for
+     * structures of at most 64 atoms.
+     *
+     * @return the ring atom mask
+     * @throws IllegalStateException the structure has more than 64 atoms
+     */
+    public long ringAtomMask() {
+        if (n > 64)
+            throw new IllegalStateException("a single ring atom mask is only available for 64 atoms or less");
+        if (tester instanceof RegularBasicRingTester)
+            return ((RegularBasicRingTester) tester).ringAtomMask();
+        ringAtomMask(word);
+        return word[0];
+    }
+
+    /**
+     * The ring atoms of the last structure perceived as the words of a mask,
+     * bit <i>i</i> % 64 of word <i>i</i> / 64 is set if atom <i>i</i> is in a
+     * ring. Words beyond the number of atoms are cleared.
+     *
+     * @param words array for the mask (at least (atoms + 63) / 64 words)
+     * @return the ring atom mask
+     */
+    public long[] ringAtomMask(long[] words) {
+        if (words.length < (n + 63) >> 6)
+            throw new IllegalArgumentException("array of " + words.length + " words can not hold " + n + " atoms");
+        Arrays.fill(words, 0);
+        ((RingCounts) tester).ringAtomMask(words);
+        return words;
+    }
+
+    /**
+     * The size of the smallest ring through each atom of the last structure
+     * perceived, 0 if the atom is not in a ring or its smallest ring has more
+     * than <i>maxSize</i> atoms. Most uses (e.g. aromaticity) only need rings
+     * up to a small size and limiting the size shortens the search.
+     *
+     * @param sizes   array to fill (length >= number of atoms)
+     * @param maxSize the largest ring size of interest
+     * @return the sizes
+     */
+    public int[] smallestRingSizes(int[] sizes, int maxSize) {
+        if (sizes.length < n)
+            throw new IllegalArgumentException("array of " + sizes.length + " can not hold " + n + " ring sizes");
+        return smallestRings().atomSizes(sizes, maxSize);
+    }
+
+    /**
+     * The size of the smallest ring through each atom of the last structure
+     * perceived, 0 if the atom is not in a ring.
+     *
+     * @param sizes array to fill (length >= number of atoms)
+     * @return the sizes
+     */
+    public int[] smallestRingSizes(int[] sizes) {
+        return smallestRingSizes(sizes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The size of the smallest ring through the bond between the adjacent
+     * vertices <i>u</i> and <i>v</i>, 0 if the bond is not in a ring or its
+     * smallest ring has more than <i>maxSize</i> atoms.
+     *
+     * @param u       a vertex
+     * @param v       a vertex adjacent to <i>u</i>
+     * @param maxSize the largest ring size of interest
+     * @return the ring size
+     */
+    public int smallestRingSize(int u, int v, int maxSize) {
+        return smallestRings().bondSize(u, v, maxSize);
+    }
+
+    /**
+     * The size of the smallest ring through a bond, see
+     * {@link #smallestRingSize(int, int, int)}.
+     *
+     * @param bond    a bond of the last container perceived
+     * @param maxSize the largest ring size of interest
+     * @return the ring size
+     */
+    public int smallestRingSize(IBond bond, int maxSize) {
+        if (container == null)
+            throw new IllegalStateException("the last graph perceived was not a container");
+        return smallestRingSize(index.get(bond.getAtom(0)), index.get(bond.getAtom(1)), maxSize);
+    }
+
+    private SmallestRings smallestRings() {
+        if (!smallestPrepared) {
+            smallest.prepare(n, graphOffsets, graphNeighbours, tester);
+            smallestPrepared = true;
+        }
+        return smallest;
+    }
+
+}
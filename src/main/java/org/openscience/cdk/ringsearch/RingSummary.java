@@ -0,0 +1,89 @@
+package org.openscience.cdk.ringsearch;
+
+/**
+ * Counts describing the rings of a structure: the circuit rank (number of
+ * independent rings, the cyclomatic number), the number of ring systems and
+ * the number of ring atoms. The counts are kept by the testers during the
+ * search so a summary costs a single call, e.g. to reject structures early
+ * when screening.
+ *
+ * <blockquote><pre>
+ * workspace.perceive(container);
+ * RingSummary summary = workspace.summary();
+ * if (summary.circuitRank() &gt; 4)
+ *     continue;
+ * </pre></blockquote>
+ *
+ * @author John May
+ */
+public final class RingSummary {
+
+    private final int atomCount;
+    private final int circuitRank;
+    private final int ringSystemCount;
+    private final int ringAtomCount;
+
+    RingSummary(int atomCount, int circuitRank, int ringSystemCount, int ringAtomCount) {
+        this.atomCount = atomCount;
+        this.circuitRank = circuitRank;
+        this.ringSystemCount = ringSystemCount;
+        this.ringAtomCount = ringAtomCount;
+    }
+
+    /**
+     * Summarise the counts of a tester.
+     *
+     * @param counts a searched tester
+     * @return the summary
+     */
+    static RingSummary of(RingCounts counts) {
+        return new RingSummary(counts.order(),
+                               counts.backEdgeCount(),
+                               counts.ringSystemCount(),
+                               counts.ringAtomCount());
+    }
+
+    /**
+     * @return number of atoms
+     */
+    public int atomCount() {
+        return atomCount;
+    }
+
+    /**
+     * The number of independent rings, |E| - |V| + components.
+     *
+     * @return the circuit rank
+     */
+    public int circuitRank() {
+        return circuitRank;
+    }
+
+    /**
+     * @return number of ring systems (fused or spiro rings are one system)
+     */
+    public int ringSystemCount() {
+        return ringSystemCount;
+    }
+
+    /**
+     * @return number of atoms in a ring
+     */
+    public int ringAtomCount() {
+        return ringAtomCount;
+    }
+
+    /**
+     * @return there are no rings
+     */
+    public boolean isAcyclic() {
+        return circuitRank == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RingSummary{atoms=%d, circuit rank=%d, ring systems=%d, ring atoms=%d}",
+                             atomCount, circuitRank, ringSystemCount, ringAtomCount);
+    }
+
+}
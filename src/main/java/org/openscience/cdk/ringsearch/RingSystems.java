@@ -0,0 +1,135 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.Arrays;
+
+/**
+ * Utilities for partitioning the ring atoms into ring systems. A ring system
+ * is a maximal set of rings connected by shared atoms (fused or spiro), an
+ * isolated ring is a system of its own. The larger testers merge systems with
+ * a disjoint-set forest stored in an int array, the 64-bit tester keeps one
+ * long mask per system.
+ *
+ * @author John May
+ */
+final class RingSystems {
+
+    private RingSystems() {
+    }
+
+    /**
+     * Create a disjoint-set forest of <i>n</i> singleton sets.
+     *
+     * @param n number of vertices
+     * @return the forest
+     */
+    static int[] forest(int n) {
+        return forest(null, n);
+    }
+
+    /**
+     * Reset a disjoint-set forest to <i>n</i> singleton sets, the array is
+     * reused if it is large enough.
+     *
+     * @param forest existing forest (may be null)
+     * @param n      number of vertices
+     * @return the forest
+     */
+    static int[] forest(int[] forest, int n) {
+        if (forest == null || forest.length < n)
+            forest = new int[n];
+        for (int i = 0; i < n; i++)
+            forest[i] = i;
+        return forest;
+    }
+
+    /**
+     * Find the representative of the set containing <i>v</i> (with path
+     * halving).
+     */
+    static int find(int[] forest, int v) {
+        while (forest[v] != v)
+            v = forest[v] = forest[forest[v]];
+        return v;
+    }
+
+    /**
+     * Merge the sets containing <i>u</i> and <i>v</i>.
+     *
+     * @return the sets were different (and have been merged)
+     */
+    static boolean union(int[] forest, int u, int v) {
+        u = find(forest, u);
+        v = find(forest, v);
+        if (u == v)
+            return false;
+        forest[u] = v;
+        return true;
+    }
+
+    /**
+     * Label the ring atoms with the index of their ring system.
+     *
+     * @param forest disjoint-set forest of the ring systems
+     * @param tester the ring tester
+     * @param n      number of vertices
+     * @return index of the ring system for each vertex, -1 if not in a ring
+     */
+    static int[] label(int[] forest, RingTester tester, int n) {
+        int[] labels = new int[n];
+        int[] roots = new int[n];
+        int count = 0;
+        Arrays.fill(roots, -1);
+        for (int v = 0; v < n; v++) {
+            if (tester.isInRing(v)) {
+                int root = find(forest, v);
+                if (roots[root] < 0)
+                    roots[root] = count++;
+                labels[v] = roots[root];
+            } else {
+                labels[v] = -1;
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Label the ring atoms with the index of their ring system.
+     *
+     * @param systems one mask per ring system
+     * @param count   number of ring systems
+     * @param n       number of vertices (at most 64)
+     * @return index of the ring system for each vertex, -1 if not in a ring
+     */
+    static int[] label(long[] systems, int count, int n) {
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        for (int s = 0; s < count; s++) {
+            for (long mask = systems[s]; mask != 0; mask &= mask - 1)
+                labels[Long.numberOfTrailingZeros(mask)] = s;
+        }
+        return labels;
+    }
+
+    /**
+     * Label the ring atoms with the index of their ring system.
+     *
+     * @param systems one mask of <i>words</i> words per ring system, stored
+     *                consecutively
+     * @param count   number of ring systems
+     * @param words   number of words in each mask
+     * @param n       number of vertices
+     * @return index of the ring system for each vertex, -1 if not in a ring
+     */
+    static int[] label(long[] systems, int count, int words, int n) {
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        for (int s = 0; s < count; s++) {
+            for (int k = 0; k < words; k++) {
+                for (long mask = systems[s * words + k]; mask != 0; mask &= mask - 1)
+                    labels[(k << 6) + Long.numberOfTrailingZeros(mask)] = s;
+            }
+        }
+        return labels;
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.openscience.cdk.ringsearch;
 
 import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
 
 /**
  * Describes an algorithm capable of testing whether an atom is in a ring
@@ -13,4 +14,24 @@ public interface RingTester {
 
     public boolean isInRing(IAtom atom);
 
+    /**
+     * Is the edge between the adjacent vertices <i>u</i> and <i>v</i> in a
+     * ring. The result is undefined if the vertices are not adjacent.
+     *
+     * @param u a vertex
+     * @param v a vertex adjacent to <i>u</i>
+     * @return the edge is in a ring
+     */
+    public boolean isInRing(int u, int v);
+
+    public boolean isInRing(IBond bond);
+
+    /**
+     * Partition the ring atoms into ring systems, rings which share atoms
+     * (fused or spiro) belong to the same system.
+     *
+     * @return index of the ring system for each vertex, -1 if not in a ring
+     */
+    public int[] ringSystems();
+
 }
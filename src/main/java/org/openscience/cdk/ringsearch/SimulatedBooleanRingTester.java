@@ -5,7 +5,6 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 
@@ -20,9 +19,9 @@ public class SimulatedBooleanRingTester implements RingTester {
     public SimulatedBooleanRingTester(IAtomContainer container) {
         this.container = container;
         if (container.getAtomCount() < 64)
-            tester = new RegularBasicRingTester(createList(container));
+            tester = new RegularBasicRingTester(CsrGraph.fromAdjacency(create(container)));
         else
-            tester = new JumboBasicRingTester(createList(container));
+            tester = new JumboBasicRingTester(CsrGraph.fromAdjacency(create(container)));
     }
 
     @Override
@@ -35,23 +34,46 @@ public class SimulatedBooleanRingTester implements RingTester {
         return tester.isInRing(container.getAtomNumber(atom));
     }
 
+    @Override
+    public boolean isInRing(int u, int v) {
+        return false; // simulated
+    }
+
+    @Override
+    public int[] ringSystems() {
+        return tester.ringSystems();
+    }
+
+    @Override
+    public boolean isInRing(IBond bond) {
+        return tester.isInRing(container.getAtomNumber(bond.getAtom(0)),
+                               container.getAtomNumber(bond.getAtom(1)));
+    }
+
     public static int[][] create(IAtomContainer container) {
 
         int n = container.getAtomCount();
-        int[][] graph = new int[n][12];
         int[] connected = new int[n];
+        AtomIndex index = new AtomIndex().index(container);
 
-        // ct table only
+        // count the degree of each atom first
         for (IBond bond : container.bonds()) {
-            int a1 = container.getAtomNumber(bond.getAtom(0));
-            int a2 = container.getAtomNumber(bond.getAtom(1));
-            graph[a1][connected[a1]++] = a2;
-            graph[a2][connected[a2]++] = a1;
+            connected[index.get(bond.getAtom(0))]++;
+            connected[index.get(bond.getAtom(1))]++;
         }
 
-        // trim the neighbours
+        int[][] graph = new int[n][];
         for (int i = 0; i < n; i++) {
-            graph[i] = Arrays.copyOf(graph[i], connected[i]);
+            graph[i] = new int[connected[i]];
+            connected[i] = 0;
+        }
+
+        // ct table only
+        for (IBond bond : container.bonds()) {
+            int a1 = index.get(bond.getAtom(0));
+            int a2 = index.get(bond.getAtom(1));
+            graph[a1][connected[a1]++] = a2;
+            graph[a2][connected[a2]++] = a1;
         }
 
         return graph;
@@ -62,14 +84,15 @@ public class SimulatedBooleanRingTester implements RingTester {
         int n = container.getAtomCount();
 
         List<List<Integer>> graph = new ArrayList<List<Integer>>(n);
+        AtomIndex index = new AtomIndex().index(container);
 
         for (int i = 0; i < n; i++)
             graph.add(new ArrayList<Integer>(6));
 
         // ct table only
         for (IBond bond : container.bonds()) {
-            int i = container.getAtomNumber(bond.getAtom(0));
-            int j = container.getAtomNumber(bond.getAtom(1));
+            int i = index.get(bond.getAtom(0));
+            int j = index.get(bond.getAtom(1));
             graph.get(i).add(j);
             graph.get(j).add(i);
         }
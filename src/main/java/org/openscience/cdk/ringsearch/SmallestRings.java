@@ -0,0 +1,208 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.Arrays;
+
+/**
+ * The size of the smallest ring through each atom and bond. The smallest ring
+ * through a bond {u,v} is one more than the shortest path from <i>u</i> to
+ * <i>v</i> that does not use the bond, found with a breadth-first search
+ * which only enters ring atoms and stops at a maximum size. The smallest ring
+ * through an atom is the smallest ring through any of its bonds. For graphs
+ * of at most 64 vertices the search frontier is a single 64-bit mask and each
+ * level is expanded by or-ing the neighbour masks of the frontier. The arrays
+ * only grow so an instance may be reused for many graphs.
+ *
+ * @author John May
+ */
+final class SmallestRings {
+
+    private int   n;
+    private int[] offsets;
+    private int[] neighbours;
+    private RingTester tester;
+
+    // 64-bit tier: ring atoms and their ring atom neighbours
+    private long   cyclic;
+    private long[] adjacency = new long[64];
+
+    // larger graphs: ring atoms, BFS queue and visit stamps
+    private boolean[] ring  = new boolean[0];
+    private int[]     queue = new int[0];
+    private int[]     mark  = new int[0];
+    private int       stamp;
+
+    /**
+     * Prepare to query the ring sizes of a graph.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param tester     ring tester for the graph
+     * @return this
+     */
+    SmallestRings prepare(int n, int[] offsets, int[] neighbours, RingTester tester) {
+
+        this.n = n;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.tester = tester;
+
+        if (n <= 64) {
+            cyclic = 0;
+            if (tester instanceof RegularBasicRingTester) {
+                cyclic = ((RegularBasicRingTester) tester).ringAtomMask();
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (tester.isInRing(i))
+                        cyclic |= 1L << i;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                long mask = 0;
+                if ((cyclic & (1L << i)) != 0) {
+                    for (int k = offsets[i], end = offsets[i + 1]; k < end; k++)
+                        mask |= 1L << neighbours[k];
+                }
+                adjacency[i] = mask & cyclic;
+            }
+        } else {
+            if (ring.length < n) {
+                ring = new boolean[n];
+                queue = new int[n];
+                mark = new int[n];
+                stamp = 0;
+            }
+            for (int i = 0; i < n; i++)
+                ring[i] = tester.isInRing(i);
+        }
+
+        return this;
+    }
+
+    /**
+     * The size of the smallest ring through each atom, 0 if the atom is not
+     * in a ring or the smallest ring is larger than <i>max</i>.
+     *
+     * @param sizes array to fill (length >= n)
+     * @param max   the largest ring size to search for
+     * @return the sizes
+     */
+    int[] atomSizes(int[] sizes, int max) {
+
+        Arrays.fill(sizes, 0, n, 0);
+
+        for (int u = 0; u < n; u++) {
+            if (!isRingAtom(u))
+                continue;
+            for (int k = offsets[u], end = offsets[u + 1]; k < end; k++) {
+                int v = neighbours[k];
+                if (v < u || !isRingAtom(v) || !tester.isInRing(u, v))
+                    continue;
+                // only a ring smaller than both atoms already have is of use
+                int limit = max;
+                if (sizes[u] != 0 && sizes[v] != 0)
+                    limit = Math.min(limit, Math.max(sizes[u], sizes[v]) - 1);
+                if (limit < 3)
+                    continue;
+                int size = search(u, v, limit);
+                if (size == 0)
+                    continue;
+                if (sizes[u] == 0 || size < sizes[u])
+                    sizes[u] = size;
+                if (sizes[v] == 0 || size < sizes[v])
+                    sizes[v] = size;
+            }
+        }
+
+        return sizes;
+    }
+
+    /**
+     * The size of the smallest ring through the bond between the adjacent
+     * vertices <i>u</i> and <i>v</i>, 0 if the bond is not in a ring or the
+     * smallest ring is larger than <i>max</i>.
+     *
+     * @param u   a vertex
+     * @param v   a vertex adjacent to <i>u</i>
+     * @param max the largest ring size to search for
+     * @return the ring size
+     */
+    int bondSize(int u, int v, int max) {
+        if (!isRingAtom(u) || !isRingAtom(v) || !tester.isInRing(u, v))
+            return 0;
+        return search(u, v, max);
+    }
+
+    private boolean isRingAtom(int v) {
+        return n <= 64 ? (cyclic & (1L << v)) != 0 : ring[v];
+    }
+
+    private int search(int u, int v, int max) {
+        return n <= 64 ? searchMasks(u, v, max) : searchQueue(u, v, max);
+    }
+
+    /**
+     * Level by level search with 64-bit masks.
+     */
+    private int searchMasks(int u, int v, int max) {
+
+        long target = 1L << v;
+
+        // the bond itself is not used, v is only reached by another path
+        long frontier = adjacency[u] & ~target;
+        long visited = frontier | (1L << u);
+
+        // the frontier holds the vertices 'size - 2' bonds from u
+        for (int size = 3; size <= max && frontier != 0; size++) {
+            long next = 0;
+            for (long f = frontier; f != 0; f &= f - 1)
+                next |= adjacency[Long.numberOfTrailingZeros(f)];
+            if ((next & target) != 0)
+                return size;
+            frontier = next & ~visited;
+            visited |= frontier;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Level by level search with a queue, a vertex is visited if its mark is
+     * the current stamp.
+     */
+    private int searchQueue(int u, int v, int max) {
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+
+        int head = 0, tail = 0;
+        mark[u] = stamp;
+        for (int k = offsets[u], end = offsets[u + 1]; k < end; k++) {
+            int w = neighbours[k];
+            if (w != v && ring[w] && mark[w] != stamp) {
+                mark[w] = stamp;
+                queue[tail++] = w;
+            }
+        }
+
+        for (int size = 3; size <= max && head < tail; size++) {
+            for (int level = tail; head < level; ) {
+                int w = queue[head++];
+                for (int k = offsets[w], end = offsets[w + 1]; k < end; k++) {
+                    int x = neighbours[k];
+                    if (x == v)
+                        return size;
+                    if (ring[x] && mark[x] != stamp) {
+                        mark[x] = stamp;
+                        queue[tail++] = x;
+                    }
+                }
+            }
+        }
+
+        return 0;
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.openscience.cdk.ringsearch;
+
+/**
+ * Searches graphs with the narrowest tier that fits, reusing one tester of
+ * each tier. The tester returned by {@link #search} is valid until the next
+ * search.
+ *
+ * @author John May
+ */
+final class TierSelector {
+
+    private final int linearThreshold;
+
+    // testers are created on first use and reused
+    private RegularBasicRingTester   regular;
+    private MultiWordBasicRingTester multiWord;
+    private JumboBasicRingTester     jumbo;
+    private LinearBasicRingTester    linear;
+
+    /**
+     * @param linearThreshold size above which the linear tester is used
+     */
+    TierSelector(int linearThreshold) {
+        this.linearThreshold = linearThreshold;
+    }
+
+    /**
+     * Search the graph with the narrowest tier that fits.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @param stack      explicit stack for a non-recursive search
+     * @return the tester of the graph
+     */
+    RingTester search(int n, int[] offsets, int[] neighbours, DfsStack stack) {
+        if (n <= 64) {
+            if (regular == null)
+                regular = new RegularBasicRingTester();
+            regular.search(n, offsets, neighbours, stack);
+            return regular;
+        } else if (n <= MultiWordBasicRingTester.MAX_VERTICES && n <= linearThreshold) {
+            if (multiWord == null)
+                multiWord = new MultiWordBasicRingTester();
+            multiWord.search(n, offsets, neighbours, stack);
+            return multiWord;
+        } else if (n <= linearThreshold) {
+            if (jumbo == null)
+                jumbo = new JumboBasicRingTester();
+            jumbo.search(n, offsets, neighbours, stack);
+            return jumbo;
+        } else {
+            if (linear == null)
+                linear = new LinearBasicRingTester();
+            linear.search(n, offsets, neighbours, stack);
+            return linear;
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.openscience.cdk.ringsearch;
+
+/**
+ * The 2-core of a graph, the subgraph left after repeatedly removing
+ * vertices of degree 0 or 1. Terminal atoms (e.g. hydrogens, halogens) and
+ * acyclic side chains can not be in a ring and are removed, every ring atom
+ * and bond is in the core. The core is relabelled with dense indices and
+ * stored in CSR form, {@link #toCore} and {@link #toGraph} map between the
+ * two index spaces. The arrays only grow so a core may be reused.
+ *
+ * @author John May
+ */
+final class TwoCore {
+
+    private int n, order;
+
+    // original vertex to core vertex (-1 if pruned) and back
+    private int[] toCore  = new int[0];
+    private int[] toGraph = new int[0];
+
+    // the core in CSR form, the original graph's arrays if nothing was removed
+    private int[] offsets, neighbours;
+
+    // arrays for the core when vertices were removed
+    private int[] coreOffsets    = new int[1];
+    private int[] coreNeighbours = new int[0];
+
+    // degree of each vertex as leaves are removed, and the leaves to remove
+    private int[] degree = new int[0];
+    private int[] queue  = new int[0];
+
+    /**
+     * Compute the 2-core of a graph in CSR form.
+     *
+     * @param n          number of vertices
+     * @param offsets    CSR offsets
+     * @param neighbours CSR neighbours
+     * @return this core
+     */
+    TwoCore prune(int n, int[] offsets, int[] neighbours) {
+
+        this.n = n;
+        if (degree.length < n) {
+            degree = new int[n];
+            queue = new int[n];
+            toCore = new int[n];
+            toGraph = new int[n];
+        }
+
+        int head = 0, tail = 0;
+        for (int v = 0; v < n; v++) {
+            degree[v] = offsets[v + 1] - offsets[v];
+            if (degree[v] < 2)
+                queue[tail++] = v;
+        }
+
+        // remove leaves, degree is set to -1 when a vertex is removed
+        while (head < tail) {
+            int v = queue[head++];
+            degree[v] = -1;
+            for (int k = offsets[v], end = offsets[v + 1]; k < end; k++) {
+                int w = neighbours[k];
+                if (degree[w] >= 2 && --degree[w] == 1)
+                    queue[tail++] = w;
+            }
+        }
+
+        order = 0;
+        int size = 0;
+        for (int v = 0; v < n; v++) {
+            if (degree[v] < 0) {
+                toCore[v] = -1;
+            } else {
+                toGraph[order] = v;
+                toCore[v] = order++;
+                size += degree[v];
+            }
+        }
+
+        if (order == n) {
+            // nothing removed, the graph is the core
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+            return this;
+        }
+
+        if (coreOffsets.length < order + 1)
+            coreOffsets = new int[Math.max(order + 1, 2 * coreOffsets.length)];
+        if (coreNeighbours.length < size)
+            coreNeighbours = new int[Math.max(size, 2 * coreNeighbours.length)];
+        this.offsets = coreOffsets;
+        this.neighbours = coreNeighbours;
+
+        int k = 0;
+        for (int c = 0; c < order; c++) {
+            int v = toGraph[c];
+            this.offsets[c] = k;
+            for (int j = offsets[v], end = offsets[v + 1]; j < end; j++) {
+                int w = toCore[neighbours[j]];
+                if (w >= 0)
+                    this.neighbours[k++] = w;
+            }
+        }
+        this.offsets[order] = k;
+
+        return this;
+    }
+
+    /**
+     * @return number of vertices in the original graph
+     */
+    int graphOrder() {
+        return n;
+    }
+
+    /**
+     * @return number of vertices in the core
+     */
+    int order() {
+        return order;
+    }
+
+    /**
+     * @return no vertices were removed
+     */
+    boolean isWholeGraph() {
+        return order == n;
+    }
+
+    /**
+     * The core index of vertex <i>v</i> of the original graph.
+     *
+     * @param v original vertex
+     * @return core vertex, -1 if the vertex was removed
+     */
+    int toCore(int v) {
+        return toCore[v];
+    }
+
+    /**
+     * The original index of core vertex <i>c</i>.
+     *
+     * @param c core vertex
+     * @return original vertex
+     */
+    int toGraph(int c) {
+        return toGraph[c];
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] neighbours() {
+        return neighbours;
+    }
+
+}
@@ -0,0 +1,146 @@
+package org.openscience.cdk.ringsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * The recursive and non-recursive searches of each tier find the same ring
+ * atoms, ring bonds and ring systems.
+ *
+ * @author John May
+ */
+public class BasicRingTesterTest {
+
+    @Test public void regularTier() {
+        DfsStack stack = new DfsStack();
+        CsrGraph[] graphs = TestGraphs.all();
+        int[][] expected = TestGraphs.counts();
+        for (int i = 0; i < graphs.length; i++) {
+            CsrGraph g = graphs[i];
+            if (g.order() > 64)
+                continue;
+            RingTester recursive = new RegularBasicRingTester(g);
+            RingTester iterative = new RegularBasicRingTester(g, stack);
+            assertArrayEquals("graph " + i, expected[i], TestGraphs.counts(recursive, g));
+            assertSame(g, recursive, iterative);
+        }
+    }
+
+    @Test public void multiWordTier() {
+        DfsStack stack = new DfsStack();
+        CsrGraph[] graphs = TestGraphs.all();
+        int[][] expected = TestGraphs.counts();
+        for (int i = 0; i < graphs.length; i++) {
+            CsrGraph g = graphs[i];
+            if (g.order() > MultiWordBasicRingTester.MAX_VERTICES)
+                continue;
+            RingTester own = new MultiWordBasicRingTester(g);
+            RingTester shared = new MultiWordBasicRingTester(g, stack);
+            assertArrayEquals("graph " + i, expected[i], TestGraphs.counts(own, g));
+            assertSame(g, own, shared);
+        }
+    }
+
+    @Test public void jumboTier() {
+        DfsStack stack = new DfsStack();
+        CsrGraph[] graphs = TestGraphs.all();
+        int[][] expected = TestGraphs.counts();
+        for (int i = 0; i < graphs.length; i++) {
+            CsrGraph g = graphs[i];
+            RingTester recursive = new JumboBasicRingTester(g);
+            RingTester iterative = new JumboBasicRingTester(g, stack);
+            assertArrayEquals("graph " + i, expected[i], TestGraphs.counts(recursive, g));
+            assertSame(g, recursive, iterative);
+        }
+    }
+
+    @Test public void linearTier() {
+        DfsStack stack = new DfsStack();
+        CsrGraph[] graphs = TestGraphs.all();
+        int[][] expected = TestGraphs.counts();
+        for (int i = 0; i < graphs.length; i++) {
+            CsrGraph g = graphs[i];
+            RingTester recursive = new LinearBasicRingTester(g);
+            RingTester iterative = new LinearBasicRingTester(g, stack);
+            assertArrayEquals("graph " + i, expected[i], TestGraphs.counts(recursive, g));
+            assertSame(g, recursive, iterative);
+        }
+    }
+
+    @Test public void selectedTier() {
+        DfsStack stack = new DfsStack();
+        CsrGraph[] graphs = TestGraphs.all();
+        int[][] expected = TestGraphs.counts();
+        for (int i = 0; i < graphs.length; i++) {
+            CsrGraph g = graphs[i];
+            RingTester recursive = BasicRingTester.ringTester(g);
+            RingTester iterative = BasicRingTester.ringTester(g, BasicRingTester.DEFAULT_LINEAR_THRESHOLD, stack);
+            assertArrayEquals("graph " + i, expected[i], TestGraphs.counts(recursive, g));
+            assertSame(g, recursive, iterative);
+        }
+    }
+
+    @Test public void spiroIsOneSystem() {
+        CsrGraph g = TestGraphs.spiro();
+        int[] systems = new RegularBasicRingTester(g, new DfsStack()).ringSystems();
+        for (int u = 1; u < g.order(); u++)
+            assertEquals(systems[0], systems[u]);
+    }
+
+    @Test public void disconnectedSystems() {
+        CsrGraph g = TestGraphs.disconnected();
+        int[] systems = new JumboBasicRingTester(g, new DfsStack()).ringSystems();
+        for (int u = 1; u < 6; u++)
+            assertEquals(systems[0], systems[u]);
+        assertEquals(systems[9], systems[10]);
+        assertEquals(systems[9], systems[11]);
+        assertFalse(systems[0] == systems[9]);
+        for (int u = 6; u < 9; u++)
+            assertEquals(-1, systems[u]);
+        assertEquals(-1, systems[12]);
+    }
+
+    /** the masks are built from the labels of any tester of 64 atoms or less. */
+    @Test public void ringSystemMasks() {
+        CsrGraph g = TestGraphs.disconnected();
+        long[] expected = new RegularBasicRingTester(g).ringSystemMasks();
+        assertArrayEquals(new long[]{0x3fL, 0xe00L}, expected);
+        RingTester[] testers = {
+                new ComponentRingTester(BasicRingTester.DEFAULT_LINEAR_THRESHOLD)
+                        .search(g.order(), g.offsets(), g.neighbours(), new DfsStack()),
+                BasicRingTester.ringTester(g, BasicRingTester.DEFAULT_LINEAR_THRESHOLD, null, true),
+                BasicRingTester.lazyRingTester(g),
+                new JumboBasicRingTester(g)
+        };
+        for (RingTester tester : testers)
+            assertArrayEquals(expected, new BasicRingTester(tester, null).ringSystemMasks());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noRingSystemMasksOver64Atoms() {
+        new BasicRingTester(BasicRingTester.ringTester(TestGraphs.fused(16)), null).ringSystemMasks();
+    }
+
+    /**
+     * Both testers agree on every atom and bond and partition the ring atoms
+     * into the same systems.
+     */
+    static void assertSame(CsrGraph g, RingTester a, RingTester b) {
+        int[] offsets = g.offsets(), neighbours = g.neighbours();
+        int[] as = a.ringSystems(), bs = b.ringSystems();
+        for (int u = 0; u < g.order(); u++) {
+            assertEquals("atom " + u, a.isInRing(u), b.isInRing(u));
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbours[k];
+                assertEquals("bond " + u + "-" + v, a.isInRing(u, v), b.isInRing(u, v));
+            }
+            for (int v = 0; v < u; v++)
+                assertEquals("systems " + u + "," + v,
+                             as[u] >= 0 && as[u] == as[v], bs[u] >= 0 && bs[u] == bs[v]);
+        }
+    }
+
+}
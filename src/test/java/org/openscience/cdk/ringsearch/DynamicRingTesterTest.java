@@ -0,0 +1,163 @@
+package org.openscience.cdk.ringsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Adding and removing edges updates the ring atoms, ring bonds and ring
+ * systems to those of a complete search of the edited graph.
+ *
+ * @author John May
+ */
+public class DynamicRingTesterTest {
+
+    @Test public void openAndCloseBenzene() {
+        DynamicRingTester tester = new DynamicRingTester(TestGraphs.disconnected());
+        tester.removeEdge(2, 3);
+        for (int u = 0; u < 6; u++)
+            assertFalse(tester.isInRing(u));
+        assertFalse(tester.isInRing(0, 1));
+        assertTrue(tester.isInRing(9));
+        tester.addEdge(3, 2);
+        for (int u = 0; u < 6; u++)
+            assertTrue(tester.isInRing(u));
+        assertTrue(tester.isInRing(2, 3));
+        assertMatches(TestGraphs.disconnected(), tester);
+    }
+
+    @Test public void removeFusionBond() {
+        DynamicRingTester tester = new DynamicRingTester(TestGraphs.methylNaphthalene());
+        tester.removeEdge(4, 5);
+        for (int u = 0; u < 10; u++)
+            assertTrue(tester.isInRing(u));
+        assertFalse(tester.isInRing(10));
+        assertMatches(TestGraphs.graph(11,
+                                       0, 1, 1, 2, 2, 3, 3, 4, 5, 0,
+                                       4, 6, 6, 7, 7, 8, 8, 9, 9, 5,
+                                       0, 10), tester);
+        tester.addEdge(4, 5);
+        assertTrue(tester.isInRing(4, 5));
+        assertMatches(TestGraphs.methylNaphthalene(), tester);
+    }
+
+    @Test public void removeSpiroRingBond() {
+        DynamicRingTester tester = new DynamicRingTester(TestGraphs.spiro());
+        tester.removeEdge(0, 1);
+        for (int u = 1; u < 5; u++)
+            assertFalse(tester.isInRing(u));
+        assertTrue(tester.isInRing(0));
+        for (int u = 5; u < 10; u++)
+            assertTrue(tester.isInRing(u));
+        assertMatches(TestGraphs.graph(10,
+                                       1, 2, 2, 3, 3, 4, 4, 0,
+                                       0, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 0), tester);
+    }
+
+    @Test public void removeBridge() {
+        DynamicRingTester tester = new DynamicRingTester(TestGraphs.norbornane());
+        tester.removeEdge(0, 6);
+        assertFalse(tester.isInRing(6));
+        assertFalse(tester.isInRing(3, 6));
+        tester.removeEdge(3, 6);
+        tester.removeEdge(0, 1);
+        for (int u = 0; u < 7; u++)
+            assertFalse(tester.isInRing(u));
+        tester.addEdge(1, 6);
+        tester.addEdge(0, 6);
+        assertMatches(TestGraphs.graph(7,
+                                       1, 2, 2, 3, 3, 4, 4, 5, 5, 0,
+                                       1, 6, 6, 0), tester);
+    }
+
+    @Test public void joinComponents() {
+        DynamicRingTester tester = new DynamicRingTester(TestGraphs.disconnected());
+        tester.addEdge(0, 6);
+        tester.addEdge(8, 9);
+        tester.addEdge(12, 7);
+        assertFalse(tester.isInRing(0, 6));
+        assertFalse(tester.isInRing(8, 9));
+        assertFalse(tester.isInRing(7));
+        assertMatches(TestGraphs.graph(13,
+                                       0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0,
+                                       6, 7, 7, 8,
+                                       9, 10, 10, 11, 11, 9,
+                                       0, 6, 8, 9, 12, 7), tester);
+        // closes a ring through the benzene, 8 is still on a bridge
+        tester.addEdge(12, 3);
+        assertTrue(tester.isInRing(6));
+        assertTrue(tester.isInRing(7));
+        assertTrue(tester.isInRing(12));
+        assertFalse(tester.isInRing(8));
+        int[] systems = tester.ringSystems();
+        assertEquals(systems[0], systems[12]);
+        assertFalse(systems[0] == systems[9]);
+        // and now through the cyclopropane as well
+        tester.addEdge(12, 10);
+        for (int u = 0; u < 13; u++)
+            assertTrue(tester.isInRing(u));
+        systems = tester.ringSystems();
+        for (int u = 1; u < 13; u++)
+            assertEquals(systems[0], systems[u]);
+    }
+
+    @Test public void closeMacrocycle() {
+        DynamicRingTester tester = new DynamicRingTester(TestGraphs.chain(300));
+        for (int u = 0; u < 300; u++)
+            assertFalse(tester.isInRing(u));
+        tester.addEdge(299, 0);
+        for (int u = 0; u < 300; u++)
+            assertTrue(tester.isInRing(u));
+        tester.removeEdge(150, 151);
+        for (int u = 0; u < 300; u++)
+            assertFalse(tester.isInRing(u));
+    }
+
+    @Test public void buildFromEmpty() {
+        CsrGraph g = TestGraphs.fused(20);
+        DynamicRingTester tester = new DynamicRingTester(g.order());
+        int[] offsets = g.offsets(), neighbours = g.neighbours();
+        for (int u = 0; u < g.order(); u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (u < neighbours[k])
+                    tester.addEdge(u, neighbours[k]);
+            }
+        }
+        assertMatches(g, tester);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addSelfLoop() {
+        new DynamicRingTester(TestGraphs.spiro()).addEdge(3, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addExistingEdge() {
+        new DynamicRingTester(TestGraphs.spiro()).addEdge(1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeMissingEdge() {
+        new DynamicRingTester(TestGraphs.spiro()).removeEdge(1, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multipleEdges() {
+        new DynamicRingTester(TestGraphs.graph(3, 0, 1, 1, 2, 2, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selfLoop() {
+        new DynamicRingTester(TestGraphs.graph(3, 0, 1, 1, 2, 2, 2));
+    }
+
+    /**
+     * The tester matches a complete search of the graph.
+     */
+    private static void assertMatches(CsrGraph g, DynamicRingTester tester) {
+        BasicRingTesterTest.assertSame(g, BasicRingTester.ringTester(g), tester);
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.openscience.cdk.ringsearch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The smallest ring sizes of the fixed graphs, with the 64-bit mask search
+ * and, by adding isolated vertices, the queue search.
+ *
+ * @author John May
+ */
+public class SmallestRingsTest {
+
+    @Test public void methylNaphthalene() {
+        CsrGraph g = TestGraphs.methylNaphthalene();
+        assertSizes(g, new int[]{6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 0});
+        assertEquals(6, bondSize(g, 4, 5, 20));
+        assertEquals(0, bondSize(g, 0, 10, 20));
+    }
+
+    @Test public void spiro() {
+        CsrGraph g = TestGraphs.spiro();
+        assertSizes(g, new int[]{5, 5, 5, 5, 5, 6, 6, 6, 6, 6});
+        assertEquals(5, bondSize(g, 0, 1, 20));
+        assertEquals(6, bondSize(g, 0, 5, 20));
+    }
+
+    @Test public void norbornane() {
+        CsrGraph g = TestGraphs.norbornane();
+        assertSizes(g, new int[]{5, 5, 5, 5, 5, 5, 5});
+        assertEquals(5, bondSize(g, 1, 2, 20));
+        assertEquals(5, bondSize(g, 0, 6, 20));
+    }
+
+    @Test public void disconnected() {
+        CsrGraph g = TestGraphs.disconnected();
+        assertSizes(g, new int[]{6, 6, 6, 6, 6, 6, 0, 0, 0, 3, 3, 3, 0});
+        assertEquals(0, bondSize(g, 6, 7, 20));
+        assertEquals(3, bondSize(g, 11, 9, 20));
+    }
+
+    @Test public void macrocycle() {
+        CsrGraph g = TestGraphs.macrocycle(30);
+        int[] expected = new int[32];
+        for (int i = 0; i < 30; i++)
+            expected[i] = 30;
+        assertSizes(g, expected);
+        assertEquals(30, bondSize(g, 29, 0, 30));
+        assertEquals(0, bondSize(g, 29, 0, 29));
+    }
+
+    @Test public void largeMacrocycle() {
+        CsrGraph g = TestGraphs.macrocycle(300);
+        int[] sizes = prepare(g).atomSizes(new int[g.order()], Integer.MAX_VALUE);
+        for (int i = 0; i < 300; i++)
+            assertEquals(300, sizes[i]);
+        assertEquals(0, sizes[300]);
+        assertEquals(0, sizes[301]);
+    }
+
+    @Test public void fused() {
+        CsrGraph g = TestGraphs.fused(60);
+        int[] sizes = prepare(g).atomSizes(new int[g.order()], Integer.MAX_VALUE);
+        for (int i = 0; i < g.order(); i++)
+            assertEquals(6, sizes[i]);
+    }
+
+    /** rings larger than the maximum are not reported. */
+    @Test public void maximumSize() {
+        CsrGraph g = TestGraphs.spiro();
+        assertArrayEquals(new int[]{5, 5, 5, 5, 5, 0, 0, 0, 0, 0},
+                          prepare(g).atomSizes(new int[g.order()], 5));
+        assertArrayEquals(new int[10],
+                          prepare(g).atomSizes(new int[g.order()], 4));
+    }
+
+    /** one instance may be reused for graphs of any size. */
+    @Test public void reuse() {
+        SmallestRings rings = new SmallestRings();
+        for (CsrGraph g : TestGraphs.all()) {
+            int[] sizes = rings.prepare(g.order(), g.offsets(), g.neighbours(),
+                                        BasicRingTester.ringTester(g))
+                               .atomSizes(new int[g.order()], Integer.MAX_VALUE);
+            int[] expected = prepare(g).atomSizes(new int[g.order()], Integer.MAX_VALUE);
+            assertArrayEquals(expected, sizes);
+        }
+    }
+
+    /**
+     * Check the sizes of the atoms with the mask search and, with 64
+     * isolated vertices added, the queue search.
+     */
+    private static void assertSizes(CsrGraph g, int[] expected) {
+        int[] sizes = prepare(g).atomSizes(new int[g.order()], Integer.MAX_VALUE);
+        assertArrayEquals("mask search", expected, sizes);
+        CsrGraph padded = pad(g);
+        sizes = prepare(padded).atomSizes(new int[padded.order()], Integer.MAX_VALUE);
+        int[] paddedExpected = new int[padded.order()];
+        System.arraycopy(expected, 0, paddedExpected, 0, expected.length);
+        assertArrayEquals("queue search", paddedExpected, sizes);
+    }
+
+    /**
+     * The size of a bond, checked to be the same with the mask and queue
+     * search.
+     */
+    private static int bondSize(CsrGraph g, int u, int v, int max) {
+        int size = prepare(g).bondSize(u, v, max);
+        assertEquals("queue search", size, prepare(pad(g)).bondSize(u, v, max));
+        return size;
+    }
+
+    private static SmallestRings prepare(CsrGraph g) {
+        return new SmallestRings().prepare(g.order(), g.offsets(), g.neighbours(),
+                                           BasicRingTester.ringTester(g));
+    }
+
+    /** the graph with 64 isolated vertices added. */
+    private static CsrGraph pad(CsrGraph g) {
+        int n = g.order() + 64;
+        int[] offsets = new int[n + 1];
+        System.arraycopy(g.offsets(), 0, offsets, 0, g.order() + 1);
+        for (int i = g.order() + 1; i <= n; i++)
+            offsets[i] = offsets[g.order()];
+        return new CsrGraph(n, offsets, g.neighbours());
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.openscience.cdk.ringsearch;
+
+import java.util.Arrays;
+
+/**
+ * Small fixed graphs for the ring tester tests, hydrogen suppressed
+ * skeletons numbered from 0.
+ *
+ * @author John May
+ */
+final class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Build a graph of <i>n</i> vertices from the edges given as consecutive
+     * pairs.
+     */
+    static CsrGraph graph(int n, int... edges) {
+        int[] offsets = new int[n + 1];
+        int[] neighbours = new int[edges.length];
+        CsrGraph.fill(n, edges, edges.length, offsets, neighbours);
+        return new CsrGraph(n, offsets, neighbours);
+    }
+
+    /** 1-methylnaphthalene, the methyl is vertex 10. */
+    static CsrGraph methylNaphthalene() {
+        return graph(11,
+                     0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0,
+                     4, 6, 6, 7, 7, 8, 8, 9, 9, 5,
+                     0, 10);
+    }
+
+    /** spiro[4.5]decane, vertex 0 is the spiro atom of a 5 and a 6 ring. */
+    static CsrGraph spiro() {
+        return graph(10,
+                     0, 1, 1, 2, 2, 3, 3, 4, 4, 0,
+                     0, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 0);
+    }
+
+    /** norbornane, bridgeheads 0 and 3 and the one atom bridge 6. */
+    static CsrGraph norbornane() {
+        return graph(7,
+                     0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0,
+                     0, 6, 6, 3);
+    }
+
+    /**
+     * A ring of <i>size</i> vertices with an ethyl on vertex 0 (vertices
+     * <i>size</i> and <i>size + 1</i>).
+     */
+    static CsrGraph macrocycle(int size) {
+        int[] edges = new int[2 * (size + 2)];
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            edges[k++] = i;
+            edges[k++] = (i + 1) % size;
+        }
+        edges[k++] = 0;
+        edges[k++] = size;
+        edges[k++] = size;
+        edges[k++] = size + 1;
+        return graph(size + 2, edges);
+    }
+
+    /**
+     * Linearly fused 6 rings (an acene skeleton) of 4 * rings + 2 vertices
+     * and 5 * rings + 1 edges.
+     */
+    static CsrGraph fused(int rings) {
+        int n = 4 * rings + 2;
+        int[] edges = new int[2 * (5 * rings + 1)];
+        int k = 0;
+        for (int i = 0; i < 6; i++) {
+            edges[k++] = i;
+            edges[k++] = (i + 1) % 6;
+        }
+        // each ring is fused to the edge {a,b} of the previous ring
+        int a = 2, b = 3, next = 6;
+        for (int r = 1; r < rings; r++) {
+            int p = next++, q = next++, s = next++, t = next++;
+            int[] ring = {b, p, p, q, q, s, s, t, t, a};
+            System.arraycopy(ring, 0, edges, k, ring.length);
+            k += ring.length;
+            a = q;
+            b = s;
+        }
+        return graph(n, edges);
+    }
+
+    /** a path of <i>n</i> vertices. */
+    static CsrGraph chain(int n) {
+        int[] edges = new int[2 * Math.max(0, n - 1)];
+        for (int i = 1; i < n; i++) {
+            edges[2 * i - 2] = i - 1;
+            edges[2 * i - 1] = i;
+        }
+        return graph(n, edges);
+    }
+
+    /**
+     * Benzene (0-5), propane (6-8), cyclopropane (9-11) and a lone atom (12).
+     */
+    static CsrGraph disconnected() {
+        return graph(13,
+                     0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 0,
+                     6, 7, 7, 8,
+                     9, 10, 10, 11, 11, 9);
+    }
+
+    /**
+     * The graphs of the fixtures, either side of the 64 and 256 vertex tier
+     * limits.
+     */
+    static CsrGraph[] all() {
+        return new CsrGraph[]{
+                methylNaphthalene(), spiro(), norbornane(), disconnected(),
+                macrocycle(30), macrocycle(100), macrocycle(300),
+                fused(15), fused(16), fused(60), fused(70),
+                chain(70), chain(300)
+        };
+    }
+
+    /**
+     * The number of ring atoms, ring bonds and ring systems of each graph of
+     * {@link #all()}.
+     */
+    static int[][] counts() {
+        return new int[][]{
+                {10, 11, 1}, {10, 11, 1}, {7, 8, 1}, {9, 9, 2},
+                {30, 30, 1}, {100, 100, 1}, {300, 300, 1},
+                {62, 76, 1}, {66, 81, 1}, {242, 301, 1}, {282, 351, 1},
+                {0, 0, 0}, {0, 0, 0}
+        };
+    }
+
+    /**
+     * The number of ring atoms, ring bonds and ring systems found by a
+     * tester.
+     */
+    static int[] counts(RingTester tester, CsrGraph graph) {
+        int[] offsets = graph.offsets(), neighbours = graph.neighbours();
+        int atoms = 0, bonds = 0;
+        for (int u = 0; u < graph.order(); u++) {
+            if (tester.isInRing(u))
+                atoms++;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (u < neighbours[k] && tester.isInRing(u, neighbours[k]))
+                    bonds++;
+            }
+        }
+        int[] systems = tester.ringSystems();
+        int[] labels = new int[graph.order()];
+        int nSystems = 0;
+        for (int u = 0; u < graph.order(); u++) {
+            if (systems[u] >= 0 && Arrays.binarySearch(labels, 0, nSystems, systems[u]) < 0) {
+                labels[nSystems++] = systems[u];
+                Arrays.sort(labels, 0, nSystems);
+            }
+        }
+        return new int[]{atoms, bonds, nSystems};
+    }
+
+}